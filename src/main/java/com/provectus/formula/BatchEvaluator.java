@@ -0,0 +1,176 @@
+// ============================================
+// BatchEvaluator.java
+// ============================================
+package com.provectus.formula;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates one formula against many contexts read line by line, as CSV with a header
+ * row or as NDJSON (one JSON object per line, detected from the first line).
+ * The formula is compiled once and rows are evaluated in parallel, but at most
+ * {@code window} rows are in flight, so memory stays bounded however long the input is.
+ * Results are written in input order, in the input's format; a row that cannot be parsed
+ * gets an error line like a row whose evaluation failed.
+ */
+class BatchEvaluator {
+    private static final TypeReference<LinkedHashMap<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    private final FormulaEngine engine;
+    private final int threads;
+    private final int window;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    BatchEvaluator(FormulaEngine engine, int threads) {
+        this.engine = engine;
+        this.threads = Math.max(1, threads);
+        this.window = this.threads * 16;
+    }
+
+    /**
+     * Evaluate every row of the input and write one result line per row
+     */
+    Stats run(String formula, BufferedReader in, Writer out) throws IOException {
+        long started = System.nanoTime();
+        CompiledFormula compiled = engine.compileFormula(formula);
+
+        String first = in.readLine();
+        while (first != null && first.isBlank()) {
+            first = in.readLine();
+        }
+        if (first == null) {
+            return new Stats(0, 0, System.nanoTime() - started);
+        }
+        boolean json = first.stripLeading().startsWith("{");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "formula-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<FormulaResult>> pending = new ArrayDeque<>(window);
+        long rows = 0;
+        long errors = 0;
+        try {
+            List<String> header = null;
+            String line = first;
+            if (!json) {
+                header = Csv.split(first);
+                out.write("result,error\n");
+                line = in.readLine();
+            }
+            int lineNumber = json ? 1 : 2;
+            for (; line != null; line = in.readLine(), lineNumber++) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    FormulaContext context = json ? parseJson(line, lineNumber) : parseCsv(header, line, lineNumber);
+                    pending.add(executor.submit(() -> engine.evaluate(compiled, context)));
+                } catch (IllegalArgumentException e) {
+                    // A malformed row gets an error line in its place, like a failed evaluation
+                    pending.add(CompletableFuture.completedFuture(FormulaResult.error(e.getMessage())));
+                }
+                rows++;
+                if (pending.size() >= window) {
+                    errors += write(pending.poll(), json, out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                errors += write(pending.poll(), json, out);
+            }
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Stats(rows, errors, System.nanoTime() - started);
+    }
+
+    private int write(Future<FormulaResult> future, boolean json, Writer out) throws IOException {
+        FormulaResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batch result", e);
+        } catch (ExecutionException e) {
+            result = FormulaResult.error(e.getCause().getMessage());
+        }
+
+        if (json) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            if (result.isSuccess()) {
+                Object value = result.getValue();
+                line.put("result", value instanceof Number || value instanceof Boolean || value == null ? value : value.toString());
+            } else {
+                line.put("error", result.getErrorMessage());
+            }
+            out.write(objectMapper.writeValueAsString(line));
+        } else if (result.isSuccess()) {
+            out.write(Csv.quote(String.valueOf(result.getValue())));
+            out.write(',');
+        } else {
+            out.write(',');
+            out.write(Csv.quote(String.valueOf(result.getErrorMessage())));
+        }
+        out.write('\n');
+        return result.isSuccess() ? 0 : 1;
+    }
+
+    private FormulaContext parseJson(String line, int lineNumber) {
+        Map<String, Object> values;
+        try {
+            values = objectMapper.readValue(line, JSON_OBJECT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON on line " + lineNumber + ": " + e.getOriginalMessage(), e);
+        }
+        FormulaContext context = new FormulaContext();
+        values.forEach(context::setVariable);
+        return context;
+    }
+
+    private static FormulaContext parseCsv(List<String> header, String line, int lineNumber) {
+        List<String> values = Csv.split(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("Expected " + header.size() + " columns on line " + lineNumber
+                    + ", got " + values.size());
+        }
+        FormulaContext context = new FormulaContext();
+        for (int i = 0; i < header.size(); i++) {
+            context.setVariable(header.get(i), FormulaEngineApplication.parseValue(values.get(i)));
+        }
+        return context;
+    }
+
+    /**
+     * Row and error counts of a finished batch, with its wall-clock time
+     */
+    record Stats(long rows, long errors, long elapsedNanos) {
+
+        double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Evaluated %d rows (%d errors) in %d ms, %.0f rows/s",
+                    rows, errors, elapsedNanos / 1_000_000, rowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+// ============================================
+// CompiledFormula.java
+// ============================================
+package com.provectus.formula;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.util.Map;
+
+/**
+ * A formula compiled to a script class, together with its compile-time analysis.
+ * Instances are safe to share; each evaluation gets its own {@link Script}. Once the
+ * engine has profiled enough evaluations it may add a statically compiled variant,
+ * used only for variables of exactly the profiled classes.
+ */
+public class CompiledFormula {
+    private final String source;
+    private final NumericMode mode;
+    private final Class<? extends Script> scriptClass;
+    private final FormulaAnalysis analysis;
+    private final TypeProfile profile = new TypeProfile();
+    private volatile Specialization specialization;
+
+    CompiledFormula(String source, NumericMode mode, Class<? extends Script> scriptClass, FormulaAnalysis analysis) {
+        this.source = source;
+        this.mode = mode;
+        this.scriptClass = scriptClass;
+        this.analysis = analysis;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public FormulaAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Whether a statically compiled variant for the profiled variable types is in use
+     */
+    public boolean isSpecialized() {
+        return specialization != null;
+    }
+
+    NumericMode getMode() {
+        return mode;
+    }
+
+    Class<? extends Script> getScriptClass() {
+        return scriptClass;
+    }
+
+    TypeProfile getProfile() {
+        return profile;
+    }
+
+    void specialize(Map<String, Class<?>> types, Class<? extends Script> specializedClass) {
+        specialization = new Specialization(types, specializedClass);
+    }
+
+    Script newScript(Binding binding) {
+        return InvokerHelper.createScript(scriptClass, binding);
+    }
+
+    /**
+     * A script for these variables: the specialized one if their classes match the profile, else the dynamic one
+     */
+    Script newScript(Binding binding, Map<String, Object> variables) {
+        Specialization current = specialization;
+        if (current != null && current.accepts(variables)) {
+            return InvokerHelper.createScript(current.scriptClass(), binding);
+        }
+        return newScript(binding);
+    }
+
+    private record Specialization(Map<String, Class<?>> types, Class<? extends Script> scriptClass) {
+
+        // The guard: same variable names with exactly the classes the script was compiled for
+        boolean accepts(Map<String, Object> variables) {
+            if (variables.size() != types.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null || types.get(entry.getKey()) != value.getClass()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+// ============================================
+// Csv.java
+// ============================================
+package com.provectus.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal CSV line handling shared by the batch evaluator and the user bulk loader.
+ * Fields may be double-quoted, with "" standing for a quote inside them; a quoted
+ * field may contain commas but not line breaks.
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * Split one CSV line into trimmed, unquoted fields
+     */
+    public static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Quote a field if it contains a comma, quote or line break
+     */
+    public static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
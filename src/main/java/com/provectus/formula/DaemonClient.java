@@ -0,0 +1,214 @@
+// ============================================
+// DaemonClient.java
+// ============================================
+package com.provectus.formula;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Client side of the {@link FormulaDaemon} protocol. Used by the CLI before Spring starts,
+ * so it must not depend on the application context.
+ */
+class DaemonClient implements Closeable {
+    private static final TypeReference<LinkedHashMap<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    private final SocketChannel channel;
+    private final BufferedReader in;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DaemonClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Connect to a daemon, or return null when none is listening on the socket. A socket
+     * owned by another user is refused, so it cannot impersonate the daemon.
+     */
+    static DaemonClient connect(Path socket) {
+        if (!Files.exists(socket) || !ownedByCurrentUser(socket)) {
+            return null;
+        }
+        try {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                return new DaemonClient(channel);
+            } catch (IOException e) {
+                channel.close();
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean ownedByCurrentUser(Path socket) {
+        try {
+            UserPrincipal currentUser = socket.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            return currentUser.equals(Files.getOwner(socket));
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send all requests on this connection without waiting for answers, then collect the
+     * responses, which arrive in request order
+     */
+    List<Map<String, Object>> send(List<Map<String, Object>> requests) throws IOException {
+        StringBuilder payload = new StringBuilder();
+        for (Map<String, Object> request : requests) {
+            payload.append(objectMapper.writeValueAsString(request)).append('\n');
+        }
+        // Written from another thread: a large pipeline would otherwise fill both socket buffers
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(payload.toString());
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        List<Map<String, Object>> responses = new ArrayList<>(requests.size());
+        while (responses.size() < requests.size()) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Formula daemon closed the connection");
+            }
+            responses.add(objectMapper.readValue(line, JSON_OBJECT));
+        }
+        try {
+            writer.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to send requests to the formula daemon", e.getCause());
+        }
+        return responses;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Run an --eval, --convert or --convert-usd command line on a running daemon, printing
+     * exactly what the local command would. Returns false when the command cannot be
+     * forwarded or no daemon answers, and the caller should run it locally.
+     */
+    static boolean forward(String[] args) {
+        Map<String, Object> request = toRequest(args);
+        if (request == null) {
+            return false;
+        }
+        List<Map<String, Object>> responses;
+        try (DaemonClient client = connect(FormulaDaemon.defaultSocket())) {
+            if (client == null) {
+                return false;
+            }
+            responses = client.send(List.of(request));
+        } catch (IOException e) {
+            return false;
+        }
+
+        Map<String, Object> response = responses.get(0);
+        boolean failed = response.containsKey("error");
+        Object error = response.get("error");
+        if ("eval".equals(request.get("op"))) {
+            if (!failed) {
+                System.out.println("Result: " + response.get("result"));
+            } else {
+                System.err.println("Error: " + error);
+            }
+        } else {
+            String from = ((String) request.get("from")).toUpperCase();
+            String to = ((String) request.get("to")).toUpperCase();
+            if (!failed) {
+                System.out.printf("%.2f %s = %.2f %s%n", request.get("amount"), from, ((Number) response.get("result")).doubleValue(), to);
+            } else if ("--convert-usd".equals(args[0]) || "-u".equals(args[0])) {
+                System.err.println("Error converting to USD: " + error);
+            } else {
+                System.err.println("Error converting currency: " + error);
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> toRequest(String[] args) {
+        if (args.length == 0) {
+            return null;
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        try {
+            switch (args[0]) {
+                case "--eval", "-e" -> {
+                    if (args.length < 2) {
+                        return null;
+                    }
+                    Map<String, Object> vars = new LinkedHashMap<>();
+                    for (int i = 2; i < args.length; i++) {
+                        if (args[i].contains("=")) {
+                            String[] parts = args[i].split("=", 2);
+                            vars.put(parts[0], FormulaEngineApplication.parseValue(parts[1]));
+                        }
+                    }
+                    request.put("op", "eval");
+                    request.put("formula", args[1]);
+                    request.put("vars", vars);
+                }
+                case "--convert", "-c" -> {
+                    if (args.length < 4) {
+                        return null;
+                    }
+                    request.put("op", "convert");
+                    request.put("from", args[1]);
+                    request.put("to", args[2]);
+                    request.put("amount", Double.parseDouble(args[3]));
+                }
+                case "--convert-usd", "-u" -> {
+                    if (args.length < 3) {
+                        return null;
+                    }
+                    request.put("op", "convert");
+                    request.put("from", args[1]);
+                    request.put("to", "USD");
+                    request.put("amount", Double.parseDouble(args[2]));
+                }
+                default -> {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Let the local command report it
+            return null;
+        }
+        request.put("id", 1);
+        return request;
+    }
+}
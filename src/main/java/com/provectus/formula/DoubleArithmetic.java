@@ -0,0 +1,26 @@
+// ============================================
+// DoubleArithmetic.java
+// ============================================
+package com.provectus.formula;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Runtime support for formulas compiled in {@link NumericMode#DOUBLE}. Public because
+ * generated script classes call it.
+ */
+public final class DoubleArithmetic {
+
+    private DoubleArithmetic() {
+    }
+
+    /**
+     * {@code a / b} as double for numbers, Groovy's {@code div} for anything else
+     */
+    public static Object div(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() / ((Number) b).doubleValue();
+        }
+        return InvokerHelper.invokeMethod(a, "div", b);
+    }
+}
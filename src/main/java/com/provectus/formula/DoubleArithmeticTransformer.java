@@ -0,0 +1,86 @@
+// ============================================
+// DoubleArithmeticTransformer.java
+// ============================================
+package com.provectus.formula;
+
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.syntax.Token;
+import org.codehaus.groovy.syntax.Types;
+
+import java.math.BigDecimal;
+
+/**
+ * Compilation customizer for {@link NumericMode#DOUBLE}: turns BigDecimal literals into
+ * double constants and divisions into {@link DoubleArithmetic#div} calls.
+ */
+class DoubleArithmeticTransformer extends CompilationCustomizer {
+    private static final ClassNode DOUBLE_ARITHMETIC = ClassHelper.make(DoubleArithmetic.class);
+
+    DoubleArithmeticTransformer() {
+        super(CompilePhase.SEMANTIC_ANALYSIS);
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        new Transformer(source).visitClass(classNode);
+    }
+
+    private static final class Transformer extends ClassCodeExpressionTransformer {
+        private final SourceUnit source;
+
+        Transformer(SourceUnit source) {
+            this.source = source;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression instanceof ConstantExpression constant && constant.getValue() instanceof BigDecimal decimal) {
+                return positioned(new ConstantExpression(decimal.doubleValue()), expression);
+            }
+            if (expression instanceof BinaryExpression binary) {
+                int operation = binary.getOperation().getType();
+                if (operation == Types.DIVIDE) {
+                    return positioned(div(transform(binary.getLeftExpression()), transform(binary.getRightExpression())), expression);
+                }
+                if (operation == Types.DIVIDE_EQUAL && binary.getLeftExpression() instanceof VariableExpression variable) {
+                    Expression quotient = div(variable, transform(binary.getRightExpression()));
+                    Token assign = Token.newSymbol(Types.ASSIGN, binary.getOperation().getStartLine(), binary.getOperation().getStartColumn());
+                    return positioned(new BinaryExpression(variable, assign, quotient), expression);
+                }
+            }
+            if (expression instanceof ClosureExpression closure) {
+                // Closure bodies are statements, which transformExpression does not descend into
+                closure.getCode().visit(this);
+                return closure;
+            }
+            return super.transform(expression);
+        }
+
+        private static Expression div(Expression left, Expression right) {
+            return new StaticMethodCallExpression(DOUBLE_ARITHMETIC, "div", new ArgumentListExpression(left, right));
+        }
+
+        private static Expression positioned(Expression replacement, Expression original) {
+            replacement.setSourcePosition(original);
+            return replacement;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+// ============================================
+// FormulaAnalysis.java
+// ============================================
+package com.provectus.formula;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Facts about a formula gathered from its AST at compile time.
+ */
+public class FormulaAnalysis {
+    private final Set<String> currencyBases;
+    private final boolean pure;
+    private final boolean parallel;
+
+    FormulaAnalysis(Set<String> currencyBases, boolean pure, boolean parallel) {
+        this.currencyBases = Collections.unmodifiableSet(new LinkedHashSet<>(currencyBases));
+        this.pure = pure;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Source currencies passed as literals to currency functions, whose rate tables
+     * can be fetched before the formula runs
+     */
+    public Set<String> getCurrencyBases() {
+        return currencyBases;
+    }
+
+    /**
+     * Whether the formula only computes on its inputs: no currency rates, repositories,
+     * I/O, randomness, clock or static state. Decided conservatively, so a formula
+     * reported impure may still be deterministic.
+     */
+    public boolean isPure() {
+        return pure;
+    }
+
+    /**
+     * Whether the formula starts parallel work (parallel streams, parallel* string functions),
+     * which then belongs in the engine's pool rather than the common one
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+}
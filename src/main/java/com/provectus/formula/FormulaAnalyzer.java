@@ -0,0 +1,356 @@
+// ============================================
+// FormulaAnalyzer.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.functions.CurrencyFunctions;
+import com.provectus.formula.functions.MathFunctions;
+import com.provectus.formula.functions.StringFunctions;
+import com.provectus.formula.service.Money;
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.ListExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.MethodPointerExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Compilation customizer that inspects each formula after semantic analysis, when static
+ * imports are resolved, and records a {@link FormulaAnalysis} keyed by source name.
+ * Purity is an allowlist: a formula is pure only if every class it names, constructs, casts to,
+ * declares or calls statically is a known value or function class, every method it calls on a
+ * value is a known arithmetic, text or collection operation, and it never reaches the script
+ * object or its binding.
+ */
+class FormulaAnalyzer extends CompilationCustomizer {
+    private static final String CURRENCY_FUNCTIONS = CurrencyFunctions.class.getName();
+    private static final String STRING_FUNCTIONS = StringFunctions.class.getName();
+    private static final Set<String> PARALLEL_METHODS = Set.of("parallelStream", "parallel");
+    private static final Set<String> CURRENCY_FUNCTION_NAMES = Set.of("convertCurrency", "convertToUSD", "exchangeRate");
+    private static final Set<String> CURRENCY_SERVICE_METHODS = Set.of("convert", "convertToUSD", "getExchangeRate", "getRates");
+
+    // Classes a pure formula may call or construct; everything else (System, Random, dates, files) is impure
+    private static final Set<String> PURE_CLASSES = Set.of(Math.class, MathFunctions.class, StringFunctions.class,
+            StringUtils.class, Money.class, String.class, Integer.class, Long.class, Short.class, Byte.class,
+            Double.class, Float.class, Boolean.class, Character.class, BigDecimal.class, BigInteger.class,
+            RoundingMode.class, ArrayList.class, HashMap.class, LinkedHashMap.class, HashSet.class,
+            LinkedHashSet.class, StringBuilder.class, Collectors.class, Stream.class, IntStream.class,
+            LongStream.class, DoubleStream.class).stream().map(Class::getName).collect(Collectors.toUnmodifiableSet());
+    // Further types a pure formula may cast to or declare; casts to anything else may construct it (as File)
+    private static final Set<String> PURE_TYPES = Set.of(Object.class, Number.class, CharSequence.class,
+            Comparable.class, Collection.class, List.class, Map.class, Set.class, Iterable.class)
+            .stream().map(Class::getName).collect(Collectors.toUnmodifiableSet());
+    // Methods a pure formula may call on values: arithmetic, text, collection and stream operations.
+    // Everything else (GDK I/O such as getText, toURL, execute, withReader; metaprogramming) is impure.
+    private static final Set<String> PURE_VALUE_METHODS = Set.of(
+            // Numbers and Money
+            "plus", "minus", "multiply", "div", "mod", "power", "intdiv", "negative", "positive", "abs", "round",
+            "setScale", "stripTrailingZeros", "signum", "scale", "precision", "compareTo", "equals", "hashCode",
+            "toString", "intValue", "longValue", "doubleValue", "floatValue", "toInteger", "toLong", "toDouble",
+            "toBigDecimal", "toBigInteger", "getAmount", "getMinorUnits", "getCurrency", "getFractionDigits",
+            "upto", "downto", "step", "times", "next", "previous", "isCase",
+            // Text
+            "length", "charAt", "substring", "toUpperCase", "toLowerCase", "trim", "strip", "split", "tokenize",
+            "replace", "replaceAll", "startsWith", "endsWith", "contains", "padLeft", "padRight", "center",
+            "capitalize", "reverse", "isNumber", "isInteger", "isBigDecimal", "matches", "append", "join",
+            "isBlank", "chars", "count",
+            // Collections and streams
+            "size", "get", "getAt", "putAt", "put", "containsKey", "containsValue", "isEmpty", "add", "addAll",
+            "remove", "collect", "collectEntries", "collectMany", "findAll", "find", "findResult", "findIndexOf",
+            "each", "eachWithIndex", "every", "any", "inject", "sum", "max", "min", "countBy", "groupBy", "sort",
+            "toSorted", "unique", "toUnique", "first", "last", "head", "tail", "take", "drop", "subList",
+            "indexOf", "toList", "toSet", "asList", "keySet", "values", "entrySet", "withIndex", "flatten",
+            "collate", "average", "stream", "parallelStream", "parallel", "sequential", "map", "mapToInt",
+            "mapToLong", "mapToDouble", "mapToObj", "filter", "reduce", "boxed", "getAsInt", "getAsLong",
+            "getAsDouble", "orElse", "distinct", "sorted", "limit", "skip", "anyMatch", "allMatch", "noneMatch",
+            "findFirst", "findAny", "toArray", "call", "getKey", "getValue");
+    // Names reaching the script object or its binding, also from closures (owner, delegate)
+    private static final Set<String> SCRIPT_MEMBERS = Set.of("this", "super", "binding", "getBinding", "metaClass",
+            "getMetaClass", "getProperty", "setProperty", "properties", "owner", "delegate", "thisObject");
+    // Reads time, randomness, environment or runs something, whatever the receiver
+    private static final Set<String> IMPURE_METHODS = Set.of("random", "randomUUID", "nanoTime", "currentTimeMillis",
+            "now", "getenv", "getProperty", "getInteger", "getLong", "getBoolean", "execute", "sleep", "print",
+            "println", "printf", "evaluate", "forName", "newInstance", "invokeMethod", "getMetaClass", "setMetaClass");
+    // Engine-provided bindings backed by rates or the database
+    private static final Set<String> IMPURE_VARIABLES = Set.of("currencyService", "userRepository", "userQueries",
+            "userSnapshot", "materializedAggregates");
+
+    private final Map<String, Collector> results = new ConcurrentHashMap<>();
+
+    FormulaAnalyzer() {
+        super(CompilePhase.SEMANTIC_ANALYSIS);
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        Collector collector = results.computeIfAbsent(source.getName(), name -> new Collector(source));
+        if (!classNode.isScript()) {
+            // A class declared in the formula may hold static state shared across evaluations
+            collector.pure = false;
+        }
+        collector.visitClass(classNode);
+    }
+
+    /**
+     * Whether a method of this name reads time, randomness or the environment, or runs something, whatever its receiver
+     */
+    static boolean isImpure(String method) {
+        return IMPURE_METHODS.contains(method);
+    }
+
+    /**
+     * Remove and return the analysis recorded for a compiled source
+     */
+    FormulaAnalysis take(String sourceName) {
+        Collector collector = results.remove(sourceName);
+        if (collector == null) {
+            return new FormulaAnalysis(Set.of(), false, false);
+        }
+        return new FormulaAnalysis(collector.currencyBases, collector.pure, collector.parallel);
+    }
+
+    /**
+     * Drop the state of a source whose compilation failed
+     */
+    void discard(String sourceName) {
+        results.remove(sourceName);
+    }
+
+    private static class Collector extends ClassCodeVisitorSupport {
+        private final SourceUnit source;
+        private final Set<String> currencyBases = new LinkedHashSet<>();
+        private final Set<String> scriptMethods = new HashSet<>();
+        private boolean pure = true;
+        private boolean parallel;
+
+        Collector(SourceUnit source) {
+            this.source = source;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        @Override
+        public void visitClass(ClassNode node) {
+            if (node.isScript()) {
+                for (MethodNode method : node.getMethods()) {
+                    scriptMethods.add(method.getName());
+                }
+            }
+            super.visitClass(node);
+        }
+
+        @Override
+        public void visitConstructor(ConstructorNode node) {
+            // Script constructors are generated; other classes are impure anyway
+        }
+
+        @Override
+        public void visitMethod(MethodNode node) {
+            // Skip the generated main(String[]) of the script class
+            if (!(node.isStatic() && "main".equals(node.getName()) && node.getDeclaringClass().isScript())) {
+                super.visitMethod(node);
+            }
+        }
+
+        @Override
+        public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+            String owner = call.getOwnerType().getName();
+            if (CURRENCY_FUNCTIONS.equals(owner) && CURRENCY_FUNCTION_NAMES.contains(call.getMethod())) {
+                addCurrencyBase(call.getArguments());
+            }
+            if (STRING_FUNCTIONS.equals(owner) && call.getMethod().startsWith("parallel")) {
+                parallel = true;
+            }
+            boolean pureMoney = CURRENCY_FUNCTIONS.equals(owner) && "money".equals(call.getMethod());
+            if ((!PURE_CLASSES.contains(owner) && !pureMoney) || IMPURE_METHODS.contains(call.getMethod())) {
+                pure = false;
+            }
+            super.visitStaticMethodCallExpression(call);
+        }
+
+        @Override
+        public void visitMethodCallExpression(MethodCallExpression call) {
+            visitMethodCall(call);
+            if (call.isImplicitThis()) {
+                // The implicit receiver is the script itself, which visitVariableExpression would reject
+                call.getMethod().visit(this);
+                call.getArguments().visit(this);
+            } else {
+                super.visitMethodCallExpression(call);
+            }
+        }
+
+        private void visitMethodCall(MethodCallExpression call) {
+            String method = call.getMethodAsString();
+            Expression target = call.getObjectExpression();
+            if (method != null && target instanceof VariableExpression) {
+                String name = ((VariableExpression) target).getName();
+                boolean currencyFunction = call.isImplicitThis() && CURRENCY_FUNCTION_NAMES.contains(method);
+                boolean currencyService = "currencyService".equals(name) && CURRENCY_SERVICE_METHODS.contains(method);
+                if (currencyFunction || currencyService) {
+                    addCurrencyBase(call.getArguments());
+                }
+            }
+            if (method != null && PARALLEL_METHODS.contains(method)) {
+                parallel = true;
+            }
+            if (method == null || (call.isImplicitThis() ? !scriptMethods.contains(method) : !PURE_VALUE_METHODS.contains(method))) {
+                // Dynamic names, implicit calls other than the formula's own methods (println, bound closures)
+                // and value methods outside the allowlist (file.text, url.text, string.execute())
+                pure = false;
+            }
+        }
+
+        @Override
+        public void visitMethodPointerExpression(MethodPointerExpression expression) {
+            Expression name = expression.getMethodName();
+            if (!(name instanceof ConstantExpression constant) || !PURE_VALUE_METHODS.contains(constant.getValue())) {
+                pure = false;
+            }
+            super.visitMethodPointerExpression(expression);
+        }
+
+        @Override
+        public void visitCastExpression(CastExpression expression) {
+            checkType(expression.getType());
+            super.visitCastExpression(expression);
+        }
+
+        @Override
+        public void visitDeclarationExpression(DeclarationExpression expression) {
+            // A typed declaration coerces its value, e.g. File f = [path] constructs a File
+            if (expression.isMultipleAssignmentDeclaration()) {
+                expression.getTupleExpression().getExpressions()
+                        .forEach(variable -> checkType(((VariableExpression) variable).getOriginType()));
+            } else {
+                checkType(expression.getVariableExpression().getOriginType());
+            }
+            super.visitDeclarationExpression(expression);
+        }
+
+        @Override
+        protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+            checkType(node.getReturnType());
+            for (Parameter parameter : node.getParameters()) {
+                checkType(parameter.getOriginType());
+            }
+            super.visitConstructorOrMethod(node, isConstructor);
+        }
+
+        @Override
+        public void visitClosureExpression(ClosureExpression expression) {
+            if (expression.getParameters() != null) {
+                for (Parameter parameter : expression.getParameters()) {
+                    checkType(parameter.getOriginType());
+                }
+            }
+            super.visitClosureExpression(expression);
+        }
+
+        @Override
+        public void visitPropertyExpression(PropertyExpression expression) {
+            // this.currencyService, this.binding: script properties bypass the variable checks
+            String property = expression.getPropertyAsString();
+            if (property == null || SCRIPT_MEMBERS.contains(property) || IMPURE_VARIABLES.contains(property)) {
+                pure = false;
+            }
+            super.visitPropertyExpression(expression);
+        }
+
+        @Override
+        public void visitConstructorCallExpression(ConstructorCallExpression call) {
+            if (!PURE_CLASSES.contains(call.getType().getName())) {
+                pure = false;
+            }
+            super.visitConstructorCallExpression(call);
+        }
+
+        @Override
+        public void visitClassExpression(ClassExpression expression) {
+            if (!PURE_CLASSES.contains(expression.getType().getName())) {
+                pure = false;
+            }
+            super.visitClassExpression(expression);
+        }
+
+        @Override
+        public void visitVariableExpression(VariableExpression expression) {
+            if (IMPURE_VARIABLES.contains(expression.getName()) || SCRIPT_MEMBERS.contains(expression.getName())) {
+                pure = false;
+            }
+            super.visitVariableExpression(expression);
+        }
+
+        private void checkType(ClassNode type) {
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (!ClassHelper.isPrimitiveType(type) && !PURE_CLASSES.contains(type.getName())
+                    && !PURE_TYPES.contains(type.getName())) {
+                pure = false;
+            }
+        }
+
+        private void addCurrencyBase(Expression arguments) {
+            if (!(arguments instanceof TupleExpression) || ((TupleExpression) arguments).getExpressions().isEmpty()) {
+                return;
+            }
+            Expression first = ((TupleExpression) arguments).getExpression(0);
+            if (first instanceof ListExpression) {
+                // Per-row variant: convertCurrency(['EUR', 'GBP'], 'USD', amounts)
+                for (Expression element : ((ListExpression) first).getExpressions()) {
+                    addLiteral(element);
+                }
+            } else {
+                addLiteral(first);
+            }
+        }
+
+        private void addLiteral(Expression expression) {
+            if (expression instanceof ConstantExpression && ((ConstantExpression) expression).getValue() instanceof String) {
+                currencyBases.add((String) ((ConstantExpression) expression).getValue());
+            }
+        }
+    }
+}
@@ -2,28 +2,67 @@ package com.provectus.formula;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class FormulaContext {
     private final Map<String, Object> variables;
+    private final Map<String, Supplier<?>> lazyVariables = new HashMap<>();
+    private String tenant;
     
     public FormulaContext() {
         this.variables = new HashMap<>();
     }
     
     public FormulaContext setVariable(String name, Object value) {
+        lazyVariables.remove(name);
         variables.put(name, value);
         return this;
     }
+
+    /**
+     * Add a variable computed only if a formula reads it: the supplier is called on first
+     * access during an evaluation and its value reused for the rest of that evaluation.
+     * Every evaluation that reads the variable calls the supplier again.
+     */
+    public FormulaContext setLazyVariable(String name, Supplier<?> supplier) {
+        variables.remove(name);
+        lazyVariables.put(name, supplier);
+        return this;
+    }
     
+    /**
+     * Value of a variable; a lazy one is computed by calling its supplier
+     */
     public Object getVariable(String name) {
-        return variables.get(name);
+        Supplier<?> supplier = lazyVariables.get(name);
+        return supplier != null ? supplier.get() : variables.get(name);
     }
     
+    /**
+     * The eagerly set variables
+     */
     public Map<String, Object> getVariables() {
         return new HashMap<>(variables);
     }
+
+    public Map<String, Supplier<?>> getLazyVariables() {
+        return new HashMap<>(lazyVariables);
+    }
     
     public boolean hasVariable(String name) {
-        return variables.containsKey(name);
+        return variables.containsKey(name) || lazyVariables.containsKey(name);
+    }
+
+    /**
+     * Tenant the evaluation runs for; with per-tenant pools enabled, its parallel
+     * streams run in that tenant's pool
+     */
+    public FormulaContext setTenant(String tenant) {
+        this.tenant = tenant;
+        return this;
+    }
+
+    public String getTenant() {
+        return tenant;
     }
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+// ============================================
+// FormulaDaemon.java
+// ============================================
+package com.provectus.formula;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.provectus.formula.service.CurrencyService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a warm {@link FormulaEngine} (compiled formulas, rate cache, JIT) listening on a
+ * Unix domain socket. The protocol is one JSON object per line in each direction; clients
+ * may pipeline any number of requests, and responses come back in request order.
+ *
+ * <pre>
+ * {"id":1,"op":"eval","formula":"price * qty","vars":{"price":10,"qty":3}}
+ * {"id":2,"op":"convert","from":"EUR","to":"USD","amount":100}
+ * </pre>
+ * Each response echoes the id with either {@code "result"} or {@code "error"}.
+ */
+class FormulaDaemon implements Closeable {
+    static final String SOCKET_PROPERTY = "formula.daemon.socket";
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_SOCKET = PosixFilePermissions.fromString("rw-------");
+
+    private static final TypeReference<LinkedHashMap<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    private final FormulaEngine engine;
+    private final CurrencyService currencyService;
+    private final Path socket;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "formula-daemon");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocketChannel server;
+    private Thread acceptor;
+
+    FormulaDaemon(FormulaEngine engine, CurrencyService currencyService, Path socket) {
+        this.engine = engine;
+        this.currencyService = currencyService;
+        this.socket = socket;
+    }
+
+    /**
+     * Socket used when none is given: {@code -Dformula.daemon.socket}, else one in a directory
+     * only the current user can enter, {@code $XDG_RUNTIME_DIR} or {@code ~/.formula-engine}
+     */
+    static Path defaultSocket() {
+        String configured = System.getProperty(SOCKET_PROPERTY);
+        if (configured != null) {
+            return Path.of(configured);
+        }
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDir != null && !runtimeDir.isBlank()) {
+            return Path.of(runtimeDir, "formula-engine.sock");
+        }
+        return Path.of(System.getProperty("user.home"), ".formula-engine", "formula-engine.sock");
+    }
+
+    /**
+     * Bind the socket and start accepting connections in the background. A missing socket
+     * directory is created for the current user only, and the socket itself is made owner-only.
+     */
+    synchronized void start() throws IOException {
+        Path directory = socket.toAbsolutePath().getParent();
+        if (directory != null && !Files.exists(directory)) {
+            if (POSIX) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        if (Files.exists(socket)) {
+            try (DaemonClient running = DaemonClient.connect(socket)) {
+                if (running != null) {
+                    throw new IOException("A formula daemon is already listening on " + socket);
+                }
+            }
+            // Left behind by a daemon that did not shut down cleanly
+            Files.deleteIfExists(socket);
+        }
+        ServerSocketChannel listening = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        listening.bind(UnixDomainSocketAddress.of(socket));
+        if (POSIX) {
+            try {
+                Files.setPosixFilePermissions(socket, OWNER_ONLY_SOCKET);
+            } catch (IOException e) {
+                listening.close();
+                Files.deleteIfExists(socket);
+                throw e;
+            }
+        }
+        server = listening;
+        acceptor = new Thread(() -> acceptLoop(listening), "formula-daemon-accept");
+        acceptor.start();
+    }
+
+    /**
+     * Block until the daemon is closed
+     */
+    void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    Path getSocket() {
+        return socket;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (server != null) {
+            server.close();
+            server = null;
+            connections.shutdownNow();
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    private void acceptLoop(ServerSocketChannel listening) {
+        try {
+            while (true) {
+                SocketChannel channel = listening.accept();
+                connections.execute(() -> serve(channel));
+            }
+        } catch (IOException e) {
+            // Closed by close()
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel;
+             BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                out.write(objectMapper.writeValueAsString(handle(line)));
+                out.write('\n');
+                // Pipelined requests already read get answered before the next flush
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    Map<String, Object> handle(String line) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        try {
+            Map<String, Object> request = objectMapper.readValue(line, JSON_OBJECT);
+            response.put("id", request.get("id"));
+            String op = (String) request.getOrDefault("op", "eval");
+            switch (op) {
+                case "eval" -> {
+                    FormulaResult result = engine.evaluate((String) request.get("formula"), context(request.get("vars")));
+                    if (result.isSuccess()) {
+                        response.put("result", String.valueOf(result.getValue()));
+                    } else {
+                        response.put("error", Objects.requireNonNullElse(result.getErrorMessage(), "Evaluation failed"));
+                    }
+                }
+                case "convert" -> response.put("result", currencyService.convert((String) request.get("from"),
+                        (String) request.getOrDefault("to", "USD"), ((Number) request.get("amount")).doubleValue()));
+                case "ping" -> response.put("result", "pong");
+                default -> response.put("error", "Unknown op: " + op);
+            }
+        } catch (Exception e) {
+            // Never a null error, which clients would take for success
+            response.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return response;
+    }
+
+    private static FormulaContext context(Object vars) {
+        FormulaContext context = new FormulaContext();
+        if (vars instanceof Map<?, ?> values) {
+            values.forEach((name, value) -> context.setVariable((String) name, value));
+        }
+        return context;
+    }
+}
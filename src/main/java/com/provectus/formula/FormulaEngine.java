@@ -4,30 +4,120 @@
 package com.provectus.formula;
 
 import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.Script;
+import groovy.transform.CompileStatic;
+import jakarta.annotation.PreDestroy;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 import org.codehaus.groovy.control.customizers.ImportCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import com.provectus.formula.functions.FunctionPool;
+import com.provectus.formula.functions.StringFunctions;
 import com.provectus.formula.service.CurrencyService;
+import com.provectus.formula.service.Money;
 import com.provectus.formula.repository.UserRepository;
+import com.provectus.formula.service.MaterializedAggregates;
+import com.provectus.formula.service.UserQueryService;
+import com.provectus.formula.service.UserSnapshot;
 
+import javax.lang.model.SourceVersion;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 @Component
 public class FormulaEngine {
-    private final GroovyShell shell;
+    private static final int COMPILED_CACHE_SIZE = 256;
+    // Exact classes, since a subclass could be mutable
+    private static final Set<Class<?>> IMMUTABLE_VALUE_TYPES = Set.of(String.class, Integer.class, Long.class,
+        Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class, BigDecimal.class,
+        BigInteger.class, Money.class);
+
     private final CompilerConfiguration config;
+    private final CompilerConfiguration doubleConfig;
+    private final CompilerConfiguration sharedConfig;
+    private final CompilerConfiguration sharedDoubleConfig;
+    private final CompilerConfiguration staticConfig;
+    private final CompilerConfiguration staticDoubleConfig;
+    private final FormulaAnalyzer analyzer;
     private final CurrencyService currencyService;
+    private final AtomicLong scriptCounter = new AtomicLong();
+    private final AtomicLong lazyVariablesOffered = new AtomicLong();
+    private final AtomicLong lazyVariablesMaterialized = new AtomicLong();
+    private final Map<CompileKey, CompiledFormula> compiledFormulas;
+    private final Map<MemoKey, FormulaResult> memoizedResults;
+    private final Map<Class<?>, FormulaAnalysis> analysesByClass = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<String, ForkJoinPool> tenantPools = new ConcurrentHashMap<>();
+    private volatile ForkJoinPool parallelPool;
+    private final ExecutorService specializer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "formula-specializer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Autowired(required = false)
     private UserRepository userRepository;
 
+    @Autowired(required = false)
+    private UserQueryService userQueries;
+
+    @Autowired(required = false)
+    private UserSnapshot userSnapshot;
+
+    @Autowired(required = false)
+    private MaterializedAggregates materializedAggregates;
+
     @Value("${magicval}")
     private Integer magicval;
 
+    @Value("${formula.numeric-mode:DECIMAL}")
+    private NumericMode numericMode = NumericMode.DECIMAL;
+
+    // 0 = one thread per CPU
+    @Value("${formula.parallel.threads:0}")
+    private int parallelThreads;
+
+    // 0 = tenants share the engine pool
+    @Value("${formula.parallel.tenant-threads:0}")
+    private int tenantThreads;
+
+    // Evaluations profiled before a statically compiled variant is tried (0 = never)
+    @Value("${formula.specialize.after:100}")
+    private int specializeAfter = 100;
+
+    @Value("${formula.memo.size:1024}")
+    private int memoSize = 1024;
+
+    // Carried by this engine's pools to the parallel* string functions of the formulas they run
+    @Value("${formula.strings.parallel-threshold:10000}")
+    private int stringsParallelThreshold = StringFunctions.DEFAULT_PARALLEL_THRESHOLD;
+
     public FormulaEngine(CurrencyService currencyService) {
         this.currencyService = currencyService;
         config = new CompilerConfiguration();
@@ -40,37 +130,142 @@ public class FormulaEngine {
         imports.addStaticStars("com.provectus.formula.functions.CurrencyFunctions");
         imports.addStaticStars("org.apache.commons.lang3.StringUtils");
         imports.addStarImports("java.util.stream");
+        imports.addImports("com.provectus.formula.service.Money");
         config.addCompilationCustomizers(imports);
-        
-        this.shell = new GroovyShell(config);
+
+        // Record what each formula needs (e.g. currency rates) while it compiles
+        analyzer = new FormulaAnalyzer();
+        config.addCompilationCustomizers(analyzer);
+
+        // Same imports and analysis, plus double arithmetic for NumericMode.DOUBLE
+        doubleConfig = new CompilerConfiguration();
+        doubleConfig.addCompilationCustomizers(imports, analyzer, new DoubleArithmeticTransformer());
+
+        // Variants for evaluateAll, sharing function calls across the formulas of one context
+        sharedConfig = new CompilerConfiguration();
+        sharedConfig.addCompilationCustomizers(imports, analyzer, new SharedCallTransformer());
+        sharedDoubleConfig = new CompilerConfiguration();
+        sharedDoubleConfig.addCompilationCustomizers(imports, analyzer, new DoubleArithmeticTransformer(),
+            new SharedCallTransformer());
+
+        // Type-specialized variants: the same formula compiled with @CompileStatic
+        staticConfig = new CompilerConfiguration();
+        staticConfig.addCompilationCustomizers(imports, new ASTTransformationCustomizer(CompileStatic.class));
+        staticDoubleConfig = new CompilerConfiguration();
+        staticDoubleConfig.addCompilationCustomizers(imports, new DoubleArithmeticTransformer(),
+            new ASTTransformationCustomizer(CompileStatic.class));
+
+        // Least recently used formulas are evicted, letting their classes be unloaded
+        compiledFormulas = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CompileKey, CompiledFormula> eldest) {
+                return size() > COMPILED_CACHE_SIZE;
+            }
+        });
+        memoizedResults = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey, FormulaResult> eldest) {
+                return size() > memoSize;
+            }
+        });
     }
 
     public FormulaResult evaluate(String formula, FormulaContext context) {
+        return evaluate(formula, context, numericMode);
+    }
+
+    /**
+     * Evaluate a formula compiled in the given numeric mode instead of the engine default
+     */
+    public FormulaResult evaluate(String formula, FormulaContext context, NumericMode mode) {
         try {
-            Binding binding = new Binding();
+            return evaluate(compileCached(formula, mode), context);
+        } catch (Exception e) {
+            return FormulaResult.error(e.getMessage());
+        }
+    }
 
-            // Add CurrencyService to the binding
-            binding.setVariable("currencyService", currencyService);
+    /**
+     * Evaluate an already compiled formula. Safe to call from many threads at once,
+     * since every evaluation runs in its own script instance. Results of pure formulas
+     * over immutable values are memoized, so repeated inputs skip the script entirely.
+     * Pure formulas whose variables keep the same classes are recompiled statically in
+     * the background after {@code formula.specialize.after} evaluations.
+     */
+    public FormulaResult evaluate(CompiledFormula compiled, FormulaContext context) {
+        return evaluate(compiled, context, null);
+    }
 
-            // Add UserRepository to the binding
-            if (userRepository != null) {
-                binding.setVariable("userRepository", userRepository);
+    /**
+     * Evaluate several formulas against one context, returning their results in order.
+     * The rate tables of all their literal currencies are fetched in one round, and
+     * function calls that depend only on constants and context variables (such as
+     * {@code countLetters(names)} or {@code convertCurrency('EUR', 'USD', price)}) are
+     * computed once and shared by every formula that makes them. Formulas are expected
+     * not to modify mutable context values they share.
+     */
+    public List<FormulaResult> evaluateAll(List<String> formulas, FormulaContext context) {
+        List<CompiledFormula> compiled = new ArrayList<>(formulas.size());
+        List<FormulaResult> failed = new ArrayList<>(formulas.size());
+        Set<String> currencyBases = new LinkedHashSet<>();
+        for (String formula : formulas) {
+            try {
+                CompiledFormula shared = compileCached(formula, numericMode, true);
+                currencyBases.addAll(shared.getAnalysis().getCurrencyBases());
+                compiled.add(shared);
+                failed.add(null);
+            } catch (Exception e) {
+                compiled.add(null);
+                failed.add(FormulaResult.error(e.getMessage()));
+            }
+        }
+        if (currencyService != null && !currencyBases.isEmpty()) {
+            try {
+                currencyService.prefetchRates(currencyBases);
+            } catch (RuntimeException e) {
+                // Each formula's own prefetch reports it
             }
+        }
+
+        Map<String, Object> sharedCalls = new ConcurrentHashMap<>();
+        List<FormulaResult> results = new ArrayList<>(formulas.size());
+        for (int i = 0; i < compiled.size(); i++) {
+            results.add(compiled.get(i) == null ? failed.get(i) : evaluate(compiled.get(i), context, sharedCalls));
+        }
+        return results;
+    }
 
-            // Add magicval to the binding
-            binding.setVariable("magicval", magicval);
+    private FormulaResult evaluate(CompiledFormula compiled, FormulaContext context, Map<String, Object> sharedCalls) {
+        try {
+            Map<String, Object> variables = context.getVariables();
+            Map<String, Supplier<?>> lazyVariables = context.getLazyVariables();
+            // Lazy values are unknown until read, so such contexts are neither memoized nor profiled
+            MemoKey key = lazyVariables.isEmpty() ? memoKey(compiled, variables) : null;
+            if (key != null) {
+                FormulaResult memoized = memoizedResults.get(key);
+                if (memoized != null) {
+                    return memoized;
+                }
+            }
 
-            // Add all context variables to the binding
-            for (Map.Entry<String, Object> entry : context.getVariables().entrySet()) {
-                binding.setVariable(entry.getKey(), entry.getValue());
+            Binding binding = createBinding(variables, lazyVariables);
+            if (sharedCalls != null) {
+                binding.setVariable(SharedCalls.BINDING_VARIABLE, sharedCalls);
             }
 
-            // Create a new shell with the binding
-            GroovyShell boundShell = new GroovyShell(binding, config);
+            prefetch(compiled.getAnalysis());
+            Object result = run(compiled.newScript(binding, variables), compiled.getAnalysis(), context.getTenant());
 
-            Object result = boundShell.evaluate(formula);
+            if (specializeAfter > 0 && lazyVariables.isEmpty() && compiled.getAnalysis().isPure()
+                    && compiled.getProfile().record(variables, result, specializeAfter)) {
+                specializer.execute(() -> specialize(compiled));
+            }
 
-            return FormulaResult.success(result);
+            FormulaResult success = FormulaResult.success(result);
+            if (key != null && isImmutableValue(result)) {
+                memoizedResults.put(key, success);
+            }
+            return success;
         } catch (Exception e) {
             return FormulaResult.error(e.getMessage());
         }
@@ -82,34 +277,311 @@ public class FormulaEngine {
     
     // Compile formula for reuse
     public Script compile(String formula) {
-        return shell.parse(formula);
+        return compile(formula, numericMode);
     }
-    
-    public FormulaResult evaluateCompiled(Script script, FormulaContext context) {
-        try {
-            Binding binding = new Binding();
 
-            // Add CurrencyService to the binding
-            binding.setVariable("currencyService", currencyService);
+    public Script compile(String formula, NumericMode mode) {
+        return compileCached(formula, mode).newScript(new Binding());
+    }
 
-            // Add UserRepository to the binding
-            if (userRepository != null) {
-                binding.setVariable("userRepository", userRepository);
-            }
+    /**
+     * Compile a formula once for repeated {@link #evaluate(CompiledFormula, FormulaContext)} calls
+     */
+    public CompiledFormula compileFormula(String formula) {
+        return compileCached(formula);
+    }
+
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    /**
+     * Load of the pool running the parallel streams of formulas
+     */
+    public PoolStats getParallelPoolStats() {
+        return PoolStats.of(parallelPool(null));
+    }
 
-            // Add magicval to the binding
-            binding.setVariable("magicval", magicval);
+    /**
+     * Load of each tenant pool created so far; empty unless {@code formula.parallel.tenant-threads} is set
+     */
+    public Map<String, PoolStats> getTenantPoolStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        tenantPools.forEach((tenant, pool) -> stats.put(tenant, PoolStats.of(pool)));
+        return stats;
+    }
 
-            for (Map.Entry<String, Object> entry : context.getVariables().entrySet()) {
-                binding.setVariable(entry.getKey(), entry.getValue());
+    /**
+     * How many lazy context variables evaluations were given, and how many formulas actually read
+     */
+    public LazyVariableStats getLazyVariableStats() {
+        return new LazyVariableStats(lazyVariablesOffered.get(), lazyVariablesMaterialized.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ForkJoinPool pool = parallelPool;
+        if (pool != null) {
+            pool.shutdown();
+        }
+        tenantPools.values().forEach(ForkJoinPool::shutdown);
+        specializer.shutdownNow();
+    }
+    
+    public FormulaResult evaluateCompiled(Script script, FormulaContext context) {
+        try {
+            Binding binding = createBinding(context.getVariables(), context.getLazyVariables());
+
+            FormulaAnalysis analysis = analysesByClass.get(script.getClass());
+            if (analysis != null) {
+                prefetch(analysis);
             }
 
             script.setBinding(binding);
-            Object result = script.run();
+            Object result = analysis != null ? run(script, analysis, context.getTenant()) : script.run();
 
             return FormulaResult.success(result);
         } catch (Exception e) {
             return FormulaResult.error(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the compiled form of a formula, compiling and analyzing it on first use
+     */
+    CompiledFormula compileCached(String formula) {
+        return compileCached(formula, numericMode);
+    }
+
+    CompiledFormula compileCached(String formula, NumericMode mode) {
+        return compileCached(formula, mode, false);
+    }
+
+    private CompiledFormula compileCached(String formula, NumericMode mode, boolean shared) {
+        CompileKey key = new CompileKey(formula, mode, shared);
+        CompiledFormula compiled = compiledFormulas.get(key);
+        if (compiled == null) {
+            compiled = parseFormula(formula, mode, shared);
+            compiledFormulas.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledFormula parseFormula(String formula, NumericMode mode, boolean shared) {
+        String name = "Formula" + scriptCounter.incrementAndGet() + ".groovy";
+        CompilerConfiguration configuration = mode == NumericMode.DOUBLE
+            ? (shared ? sharedDoubleConfig : doubleConfig)
+            : (shared ? sharedConfig : config);
+        try {
+            Class<? extends Script> scriptClass = parseClass(formula, name, configuration);
+            FormulaAnalysis analysis = analyzer.take(name);
+            analysesByClass.put(scriptClass, analysis);
+            return new CompiledFormula(formula, mode, scriptClass, analysis);
+        } finally {
+            analyzer.discard(name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Script> parseClass(String source, String name, CompilerConfiguration configuration) {
+        // A loader per formula so evicted formulas can be garbage collected
+        GroovyClassLoader loader = new GroovyClassLoader(FormulaEngine.class.getClassLoader(), configuration);
+        return loader.parseClass(new GroovyCodeSource(source, name, "/groovy/shell"), false);
+    }
+
+    /**
+     * Recompile a formula with @CompileStatic, its variables declared with the profiled
+     * classes. The variant is kept only if it compiles and reproduces the last profiled
+     * result; otherwise the formula simply stays dynamic.
+     */
+    private void specialize(CompiledFormula compiled) {
+        TypeProfile profile = compiled.getProfile();
+        Map<String, Class<?>> types = profile.getTypes();
+        if (types == null) {
+            return;
+        }
+        // Declarations go on the first line, so formula line numbers only shift by one
+        StringBuilder source = new StringBuilder();
+        for (Map.Entry<String, Class<?>> entry : types.entrySet()) {
+            String type = entry.getValue().getCanonicalName();
+            if (type == null || !Modifier.isPublic(entry.getValue().getModifiers()) || !SourceVersion.isName(entry.getKey())) {
+                return;
+            }
+            source.append(type).append(' ').append(entry.getKey()).append(" = (").append(type)
+                .append(") binding.getVariable('").append(entry.getKey()).append("'); ");
+        }
+        source.append('\n').append(compiled.getSource());
+
+        try {
+            Class<? extends Script> scriptClass = parseClass(source.toString(),
+                "Formula" + scriptCounter.incrementAndGet() + "Static.groovy",
+                compiled.getMode() == NumericMode.DOUBLE ? staticDoubleConfig : staticConfig);
+            Object expected = profile.getSampleResult();
+            Object actual = InvokerHelper.createScript(scriptClass, createBinding(profile.getSampleVariables(), Map.of())).run();
+            if (Objects.equals(expected, actual)) {
+                compiled.specialize(types, scriptClass);
+            }
+        } catch (Exception | LinkageError e) {
+            // Not statically compilable (dynamic calls, untyped closures); stays dynamic
+        }
+    }
+
+    /**
+     * Run a script; one that starts parallel work runs as a task of the engine (or tenant)
+     * pool, so its parallel streams fork there instead of in the JVM-wide common pool
+     */
+    private Object run(Script script, FormulaAnalysis analysis, String tenant) throws Exception {
+        if (!analysis.isParallel()) {
+            return script.run();
+        }
+        ForkJoinPool pool = parallelPool(tenant);
+        if (ForkJoinTask.getPool() == pool) {
+            // Nested evaluation, already a task of this pool
+            return script.run();
+        }
+        try {
+            return pool.submit((Callable<Object>) script::run).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private ForkJoinPool parallelPool(String tenant) {
+        if (tenant != null && tenantThreads > 0) {
+            return tenantPools.computeIfAbsent(tenant, key -> newPool(tenantThreads, "formula-parallel-" + key + "-"));
+        }
+        ForkJoinPool pool = parallelPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = parallelPool;
+                if (pool == null) {
+                    int threads = parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+                    pool = parallelPool = newPool(threads, "formula-parallel-");
+                }
+            }
+        }
+        return pool;
+    }
+
+    private ForkJoinPool newPool(int parallelism, String threadPrefix) {
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(threadPrefix + thread.getPoolIndex());
+            // Formulas load classes through the application's loader, not the system one
+            thread.setContextClassLoader(FormulaEngine.class.getClassLoader());
+            return thread;
+        };
+        // Workers blocked in repository calls get at most as many compensating threads again;
+        // beyond that the pool keeps going with fewer runnable workers instead of growing
+        return new FunctionPool(parallelism, factory, parallelism * 2, pool -> true, 60, TimeUnit.SECONDS,
+            stringsParallelThreshold);
+    }
+
+    // Null when the result may not be reused: impure formula, mutable input or memoization off
+    private MemoKey memoKey(CompiledFormula compiled, Map<String, Object> variables) {
+        if (memoSize <= 0 || !compiled.getAnalysis().isPure()) {
+            return null;
+        }
+        for (Object value : variables.values()) {
+            if (!isImmutableValue(value)) {
+                return null;
+            }
+        }
+        return new MemoKey(compiled, variables);
+    }
+
+    private static boolean isImmutableValue(Object value) {
+        return value == null || IMMUTABLE_VALUE_TYPES.contains(value.getClass());
+    }
+
+    private Binding createBinding(Map<String, Object> variables, Map<String, Supplier<?>> lazyVariables) {
+        Binding binding = lazyVariables.isEmpty() ? new Binding() : new LazyBinding(lazyVariables, lazyVariablesMaterialized);
+        lazyVariablesOffered.addAndGet(lazyVariables.size());
+
+        // Context variables override engine values of the same name, lazy ones as much as eager ones
+        BiConsumer<String, Object> engineValue = (name, value) -> {
+            if (!lazyVariables.containsKey(name)) {
+                binding.setVariable(name, value);
+            }
+        };
+
+        // Add CurrencyService to the binding
+        engineValue.accept("currencyService", currencyService);
+
+        // Add UserRepository to the binding
+        if (userRepository != null) {
+            engineValue.accept("userRepository", userRepository);
+        }
+        if (userQueries != null) {
+            engineValue.accept("userQueries", userQueries);
+        }
+        if (userSnapshot != null) {
+            engineValue.accept("userSnapshot", userSnapshot);
+        }
+        if (materializedAggregates != null) {
+            engineValue.accept("materializedAggregates", materializedAggregates);
+        }
+
+        // Add magicval to the binding
+        engineValue.accept("magicval", magicval);
+
+        // Add all context variables to the binding
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            binding.setVariable(entry.getKey(), entry.getValue());
+        }
+        return binding;
+    }
+
+    // Fetch the rate tables of all literal currencies up front, in parallel
+    private void prefetch(FormulaAnalysis analysis) {
+        if (currencyService != null && !analysis.getCurrencyBases().isEmpty()) {
+            currencyService.prefetchRates(analysis.getCurrencyBases());
+        }
+    }
+
+    // The same source compiles to different classes per numeric mode, and again for evaluateAll
+    private record CompileKey(String source, NumericMode mode, boolean shared) {
+    }
+
+    /**
+     * Snapshot of a formula pool; {@code activeThreads / parallelism} is its utilization
+     */
+    public record PoolStats(int parallelism, int poolSize, int activeThreads, int runningThreads,
+                            long queuedTasks, int queuedSubmissions, long steals) {
+
+        static PoolStats of(ForkJoinPool pool) {
+            return new PoolStats(pool.getParallelism(), pool.getPoolSize(), pool.getActiveThreadCount(),
+                pool.getRunningThreadCount(), pool.getQueuedTaskCount(), pool.getQueuedSubmissionCount(),
+                pool.getStealCount());
+        }
+
+        public double utilization() {
+            return (double) activeThreads / parallelism;
+        }
+    }
+
+    /**
+     * Lazy variables passed to evaluations and those whose supplier was called; the
+     * difference is work the formulas did not need
+     */
+    public record LazyVariableStats(long offered, long materialized) {
+
+        public long skipped() {
+            return offered - materialized;
+        }
+    }
+
+    // Compiled formulas are shared per source and mode, so identity equality is enough;
+    // the variables map is a private copy taken from the context
+    private record MemoKey(CompiledFormula formula, Map<String, Object> variables) {
+    }
+}
@@ -4,17 +4,87 @@
 package com.provectus.formula;
 
 import com.provectus.formula.functions.CurrencyFunctions;
+import com.provectus.formula.repository.UserQueryCache;
+import com.provectus.formula.repository.UserRepository;
 import com.provectus.formula.service.CurrencyService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
 @SpringBootApplication
+@EnableCaching
 public class FormulaEngineApplication {
+    static final String LITE_PROFILE = "lite";
+    static final String SERVER_PROFILE = "server";
+
+    // Formula bindings backed by JPA; formulas without them start without a datasource
+    private static final List<String> PERSISTENCE_BINDINGS =
+            List.of("userRepository", "userQueries", "userSnapshot", "materializedAggregates");
 
     public static void main(String[] args) {
-        SpringApplication.run(FormulaEngineApplication.class, args);
+        // A running daemon answers in milliseconds, with its compiled formulas and rates still warm
+        if (DaemonClient.forward(args)) {
+            return;
+        }
+        SpringApplication application = new SpringApplication(FormulaEngineApplication.class);
+        if (!needsPersistence(args)) {
+            application.setAdditionalProfiles(LITE_PROFILE);
+        }
+        if (args.length > 0 && "--server".equals(args[0])) {
+            application.setAdditionalProfiles(SERVER_PROFILE);
+        }
+        application.run(args);
+    }
+
+    /**
+     * Whether a command line may touch user data. Anything else runs in the lite profile,
+     * which skips JPA, Hibernate and H2 and creates beans lazily.
+     */
+    static boolean needsPersistence(String[] args) {
+        if (args.length == 0) {
+            return false;
+        }
+        String formula;
+        switch (args[0]) {
+            case "--help", "-h", "--convert", "-c", "--convert-usd", "-u":
+                return false;
+            case "--daemon", "--server":
+                return true;
+            case "--eval", "-e", "--batch", "-b":
+                formula = args.length > 1 ? args[1] : "";
+                break;
+            default:
+                formula = String.join(" ", args);
+        }
+        return PERSISTENCE_BINDINGS.stream().anyMatch(formula::contains);
+    }
+
+    /**
+     * Query result caches; bounded and expiring, so keys that stop being asked for do not pile up
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${formula.users.query-cache.max-entries:1024}") int maxEntries,
+                                     @Value("${formula.users.query-cache.ttl:1h}") Duration ttl) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(new UserQueryCache(UserRepository.USERS_BORN_BEFORE_CACHE, maxEntries, ttl)));
+        return cacheManager;
     }
 
     @Bean
@@ -67,6 +137,20 @@ public class FormulaEngineApplication {
                 double amount = Double.parseDouble(args[2]);
 
                 convertToUSD(currencyService, from, amount);
+            } else if ("--batch".equals(command) || "-b".equals(command)) {
+                if (args.length < 2) {
+                    System.err.println("Error: Formula required for --batch");
+                    printUsage();
+                    return;
+                }
+
+                evaluateBatch(engine, args);
+            } else if ("--server".equals(command)) {
+                // Requests are served by FormulaController until the process is stopped
+                System.err.println("Formula HTTP server started");
+            } else if ("--daemon".equals(command)) {
+                Path socket = args.length > 1 ? Path.of(args[1]) : FormulaDaemon.defaultSocket();
+                runDaemon(new FormulaDaemon(engine, currencyService, socket));
             } else {
                 // Treat entire argument as formula
                 String formula = String.join(" ", args);
@@ -87,16 +171,7 @@ public class FormulaEngineApplication {
                     String key = parts[0];
                     String value = parts[1];
 
-                    // Try to parse as number, otherwise use as string
-                    try {
-                        if (value.contains(".")) {
-                            context.setVariable(key, Double.parseDouble(value));
-                        } else {
-                            context.setVariable(key, Integer.parseInt(value));
-                        }
-                    } catch (NumberFormatException e) {
-                        context.setVariable(key, value);
-                    }
+                    context.setVariable(key, parseValue(value));
                 }
             }
 
@@ -112,6 +187,66 @@ public class FormulaEngineApplication {
         }
     }
 
+    // Try to parse as number, otherwise use as string
+    static Object parseValue(String value) {
+        try {
+            if (value.contains(".")) {
+                return Double.parseDouble(value);
+            } else {
+                return Integer.parseInt(value);
+            }
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static void evaluateBatch(FormulaEngine engine, String[] args) {
+        String formula = args[1];
+        String input = "-";
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i < args.length; i++) {
+            if (("--output".equals(args[i]) || "-o".equals(args[i])) && i + 1 < args.length) {
+                output = args[++i];
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                input = args[i];
+            }
+        }
+
+        try (BufferedReader in = "-".equals(input)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(input))) {
+            BatchEvaluator batch = new BatchEvaluator(engine, threads);
+            BatchEvaluator.Stats stats;
+            if (output == null) {
+                // Flushed but not closed: System.out stays usable
+                stats = batch.run(formula, in, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            } else {
+                try (Writer out = Files.newBufferedWriter(Path.of(output))) {
+                    stats = batch.run(formula, in, out);
+                }
+            }
+            System.err.println(stats);
+        } catch (Exception e) {
+            System.err.println("Error evaluating batch: " + e.getMessage());
+        }
+    }
+
+    private static void runDaemon(FormulaDaemon daemon) throws Exception {
+        daemon.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }));
+        System.err.println("Formula daemon listening on " + daemon.getSocket());
+        daemon.awaitTermination();
+    }
+
     private static void convertToUSD(CurrencyService service, String from, double amount) {
         try {
             double result = service.convertToUSD(from, amount);
@@ -145,6 +280,16 @@ public class FormulaEngineApplication {
         System.out.println("  java -jar formula-engine.jar --convert-usd <from> <amount>");
         System.out.println("  java -jar formula-engine.jar -u EUR 100");
         System.out.println();
+        System.out.println("Evaluate a formula for every row of a CSV (with header) or NDJSON input:");
+        System.out.println("  java -jar formula-engine.jar --batch \"<formula>\" [file|-] [--output file] [--threads n]");
+        System.out.println("  java -jar formula-engine.jar -b \"price * qty\" orders.csv -o totals.csv");
+        System.out.println();
+        System.out.println("Keep a warm engine running; --eval and --convert are then forwarded to it:");
+        System.out.println("  java -jar formula-engine.jar --daemon [socket-path]");
+        System.out.println();
+        System.out.println("Serve formulas over HTTP (port: --server.port=8080):");
+        System.out.println("  java -jar formula-engine.jar --server");
+        System.out.println();
         System.out.println("Examples:");
         System.out.println("  java -jar formula-engine.jar --eval \"2 + 2 * 3\"");
         System.out.println("  java -jar formula-engine.jar --eval \"price * quantity\" price=10.5 quantity=3");
@@ -0,0 +1,220 @@
+// ============================================
+// FormulaRegistry.java
+// ============================================
+package com.provectus.formula;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Formulas registered by id, each compiled once and evaluated without touching the
+ * compiler again. Registering an id again compiles the new source first and then swaps
+ * it in atomically with the next version number; evaluations already running finish on
+ * the version they started with, and a source that fails to compile leaves the current
+ * version in place.
+ *
+ * <p>With {@code formula.registry.dir} set, every {@code <id>.groovy} file in that directory
+ * is registered at startup, and the directory is watched: changed files are recompiled in
+ * the background and deleted files are unregistered. Replace files by moving a complete
+ * file into place; a file caught half-written may compile to an unintended formula.
+ */
+@Component
+public class FormulaRegistry {
+    private static final String EXTENSION = ".groovy";
+
+    private final FormulaEngine engine;
+    private final Map<String, RegisteredFormula> formulas = new ConcurrentHashMap<>();
+    private final Map<String, String> reloadErrors = new ConcurrentHashMap<>();
+    private final ExecutorService compiler = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "formula-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private WatchService watchService;
+
+    @Value("${formula.registry.dir:}")
+    private String directory = "";
+
+    public FormulaRegistry(FormulaEngine engine) {
+        this.engine = engine;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!directory.isBlank()) {
+            watch(Path.of(directory));
+        }
+    }
+
+    /**
+     * Register a formula under an id, replacing the current version. Registering the
+     * source the id already has is a no-op.
+     * @throws IllegalArgumentException if the formula is blank or does not compile
+     */
+    public RegisteredFormula register(String id, String source) {
+        if (source == null || source.isBlank()) {
+            // Also what a file looks like between truncation and write; never swap that in
+            throw new IllegalArgumentException("Formula " + id + " is empty");
+        }
+        RegisteredFormula current = formulas.get(id);
+        if (current != null && current.getSource().equals(source)) {
+            return current;
+        }
+        CompiledFormula compiled;
+        try {
+            compiled = engine.compileFormula(source);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Formula " + id + " does not compile: " + e.getMessage(), e);
+        }
+        // Compiled outside the map lock; only the swap is atomic
+        return formulas.compute(id, (key, previous) -> {
+            if (previous != null && previous.getSource().equals(source)) {
+                return previous;
+            }
+            int version = previous == null ? 1 : previous.getVersion() + 1;
+            return new RegisteredFormula(key, version, compiled, Instant.now());
+        });
+    }
+
+    public Optional<RegisteredFormula> get(String id) {
+        return Optional.ofNullable(formulas.get(id));
+    }
+
+    public Collection<RegisteredFormula> list() {
+        return Collections.unmodifiableCollection(formulas.values());
+    }
+
+    public boolean remove(String id) {
+        reloadErrors.remove(id);
+        return formulas.remove(id) != null;
+    }
+
+    /**
+     * Evaluate the current version of a registered formula
+     */
+    public FormulaResult evaluate(String id, FormulaContext context) {
+        RegisteredFormula formula = formulas.get(id);
+        if (formula == null) {
+            return FormulaResult.error("Unknown formula: " + id);
+        }
+        return engine.evaluate(formula.getCompiled(), context);
+    }
+
+    /**
+     * Why the last reload of a watched file failed, if it did; the previous version stays active
+     */
+    public Optional<String> getReloadError(String id) {
+        return Optional.ofNullable(reloadErrors.get(id));
+    }
+
+    /**
+     * Register every formula file of a directory and keep following its changes
+     */
+    public synchronized void watch(Path dir) throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Already watching a formula directory");
+        }
+        watchService = dir.getFileSystem().newWatchService();
+        // Watch before the initial scan, so a file changed in between is not missed
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path file : files) {
+                load(file);
+            }
+        }
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> follow(dir, service), "formula-registry-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        // Stop the watcher first, so it stops handing work to the compiler
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } finally {
+            compiler.shutdownNow();
+        }
+    }
+
+    private void follow(Path dir, WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        compiler.execute(() -> rescan(dir));
+                        continue;
+                    }
+                    Path file = dir.resolve((Path) event.context());
+                    if (!file.getFileName().toString().endsWith(EXTENSION)) {
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        // Queued behind any pending load of the same file, which would otherwise re-register it
+                        compiler.execute(() -> remove(idOf(file)));
+                    } else {
+                        compiler.execute(() -> load(file));
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+            // Registry closed, possibly while this thread was handling events
+        }
+    }
+
+    private void rescan(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path file : files) {
+                load(file);
+            }
+        } catch (IOException e) {
+            // Retried on the next event
+        }
+    }
+
+    private void load(Path file) {
+        String id = idOf(file);
+        try {
+            register(id, Files.readString(file, StandardCharsets.UTF_8));
+            reloadErrors.remove(id);
+        } catch (IOException | IllegalArgumentException e) {
+            // A half-written file fails here; the write that completes it triggers another load
+            reloadErrors.put(id, e.getMessage());
+        }
+    }
+
+    private static String idOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - EXTENSION.length());
+    }
+}
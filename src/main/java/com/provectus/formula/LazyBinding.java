@@ -0,0 +1,56 @@
+// ============================================
+// LazyBinding.java
+// ============================================
+package com.provectus.formula;
+
+import groovy.lang.Binding;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Binding for a context with lazy variables: each supplier is called on the first read of
+ * its variable, at most once per evaluation, and the value is kept for later reads. A
+ * variable the formula assigns before reading it never calls its supplier.
+ */
+class LazyBinding extends Binding {
+    private final Map<String, Supplier<?>> lazyVariables;
+    private final AtomicLong materialized;
+
+    LazyBinding(Map<String, Supplier<?>> lazyVariables, AtomicLong materialized) {
+        this.lazyVariables = lazyVariables;
+        this.materialized = materialized;
+    }
+
+    @Override
+    public Object getVariable(String name) {
+        if (!lazyVariables.containsKey(name)) {
+            return super.getVariable(name);
+        }
+        // Parallel streams in the formula may read the same variable from several threads
+        synchronized (this) {
+            if (!super.hasVariable(name)) {
+                super.setVariable(name, lazyVariables.get(name).get());
+                materialized.incrementAndGet();
+            }
+            return super.getVariable(name);
+        }
+    }
+
+    @Override
+    public void setVariable(String name, Object value) {
+        if (lazyVariables.containsKey(name)) {
+            synchronized (this) {
+                super.setVariable(name, value);
+            }
+        } else {
+            super.setVariable(name, value);
+        }
+    }
+
+    @Override
+    public boolean hasVariable(String name) {
+        return lazyVariables.containsKey(name) || super.hasVariable(name);
+    }
+}
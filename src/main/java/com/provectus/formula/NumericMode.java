@@ -0,0 +1,24 @@
+// ============================================
+// NumericMode.java
+// ============================================
+package com.provectus.formula;
+
+/**
+ * How a formula's decimal literals and divisions are compiled.
+ */
+public enum NumericMode {
+    /**
+     * Groovy semantics: {@code 10.5} is a {@code BigDecimal} and {@code 7 / 2} is {@code 3.5G}.
+     * Exact decimal results, at the cost of a BigDecimal allocation per operation.
+     */
+    DECIMAL,
+
+    /**
+     * Decimal literals are {@code double} constants and {@code /} (and {@code /=} on variables)
+     * divides two numbers as {@code double}. Results carry IEEE 754 rounding (so
+     * {@code 0.1 + 0.2 != 0.3}), and dividing by zero gives Infinity or NaN instead of throwing.
+     * Other operators follow Groovy rules, so BigDecimal values passed in the context stay
+     * BigDecimal until they meet a double. Division of non-numbers still calls their {@code div} method.
+     */
+    DOUBLE
+}
@@ -0,0 +1,44 @@
+// ============================================
+// RegisteredFormula.java
+// ============================================
+package com.provectus.formula;
+
+import java.time.Instant;
+
+/**
+ * One version of a formula in the {@link FormulaRegistry}. Immutable; a reload
+ * replaces the whole entry, so a caller holding it keeps a consistent version.
+ */
+public class RegisteredFormula {
+    private final String id;
+    private final int version;
+    private final CompiledFormula compiled;
+    private final Instant registeredAt;
+
+    RegisteredFormula(String id, int version, CompiledFormula compiled, Instant registeredAt) {
+        this.id = id;
+        this.version = version;
+        this.compiled = compiled;
+        this.registeredAt = registeredAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return compiled.getSource();
+    }
+
+    public CompiledFormula getCompiled() {
+        return compiled;
+    }
+
+    public Instant getRegisteredAt() {
+        return registeredAt;
+    }
+}
@@ -0,0 +1,192 @@
+// ============================================
+// SharedCallTransformer.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.functions.CurrencyFunctions;
+import com.provectus.formula.functions.MathFunctions;
+import com.provectus.formula.functions.StringFunctions;
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.DynamicVariable;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.ArrayExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.ListExpression;
+import org.codehaus.groovy.ast.expr.PostfixExpression;
+import org.codehaus.groovy.ast.expr.PrefixExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.classgen.GeneratorContext;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.customizers.CompilationCustomizer;
+import org.codehaus.groovy.syntax.Types;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compilation customizer for {@link FormulaEngine#evaluateAll}: rewrites calls of the
+ * formula function libraries whose arguments are only constants, context variables and
+ * other such calls into {@link SharedCalls#call}, keyed by the call's structure. Context
+ * variables the formula assigns are excluded, since their value is then its own.
+ */
+class SharedCallTransformer extends CompilationCustomizer {
+    private static final ClassNode SHARED_CALLS = ClassHelper.make(SharedCalls.class);
+    private static final Set<String> SHARED_OWNERS = Set.of(Math.class, MathFunctions.class, StringFunctions.class,
+            StringUtils.class, CurrencyFunctions.class).stream().map(Class::getName).collect(Collectors.toUnmodifiableSet());
+
+    SharedCallTransformer() {
+        super(CompilePhase.SEMANTIC_ANALYSIS);
+    }
+
+    @Override
+    public void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) {
+            return;
+        }
+        AssignedVariables assigned = new AssignedVariables(source);
+        assigned.visitClass(classNode);
+        new Transformer(source, assigned.names).visitClass(classNode);
+    }
+
+    /**
+     * Context (binding) variables a formula writes to
+     */
+    private static final class AssignedVariables extends ClassCodeVisitorSupport {
+        private final SourceUnit source;
+        private final Set<String> names = new HashSet<>();
+
+        AssignedVariables(SourceUnit source) {
+            this.source = source;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        @Override
+        public void visitBinaryExpression(BinaryExpression expression) {
+            if (Types.ofType(expression.getOperation().getType(), Types.ASSIGNMENT_OPERATOR)) {
+                addDynamic(expression.getLeftExpression());
+            }
+            super.visitBinaryExpression(expression);
+        }
+
+        @Override
+        public void visitPrefixExpression(PrefixExpression expression) {
+            addDynamic(expression.getExpression());
+            super.visitPrefixExpression(expression);
+        }
+
+        @Override
+        public void visitPostfixExpression(PostfixExpression expression) {
+            addDynamic(expression.getExpression());
+            super.visitPostfixExpression(expression);
+        }
+
+        private void addDynamic(Expression expression) {
+            if (expression instanceof VariableExpression variable && variable.getAccessedVariable() instanceof DynamicVariable) {
+                names.add(variable.getName());
+            }
+        }
+    }
+
+    private static final class Transformer extends ClassCodeExpressionTransformer {
+        private final SourceUnit source;
+        private final Set<String> assigned;
+        private boolean staticContext;
+
+        Transformer(SourceUnit source, Set<String> assigned) {
+            this.source = source;
+            this.assigned = assigned;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        @Override
+        protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+            // No script instance (and so no binding) to share through in static methods such as main
+            staticContext = node.isStatic();
+            super.visitConstructorOrMethod(node, isConstructor);
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression instanceof ClosureExpression closure) {
+                // Closure bodies are statements, which transformExpression does not descend into
+                closure.getCode().visit(this);
+                return closure;
+            }
+            if (!staticContext && expression instanceof StaticMethodCallExpression call && isShared(call)) {
+                List<Expression> arguments = ((TupleExpression) call.getArguments()).getExpressions().stream()
+                        .map(this::transform).toList();
+                Expression shared = new StaticMethodCallExpression(SHARED_CALLS, "call", new ArgumentListExpression(new Expression[]{
+                        VariableExpression.THIS_EXPRESSION, new ConstantExpression(keyOf(call)),
+                        new ClassExpression(call.getOwnerType()), new ConstantExpression(call.getMethod()),
+                        new ArrayExpression(ClassHelper.OBJECT_TYPE, arguments)}));
+                shared.setSourcePosition(call);
+                return shared;
+            }
+            return super.transform(expression);
+        }
+
+        private boolean isShared(StaticMethodCallExpression call) {
+            return SHARED_OWNERS.contains(call.getOwnerType().getName())
+                    && !FormulaAnalyzer.isImpure(call.getMethod())
+                    && call.getArguments() instanceof TupleExpression arguments
+                    && arguments.getExpressions().stream().allMatch(this::dependsOnContextOnly);
+        }
+
+        private boolean dependsOnContextOnly(Expression expression) {
+            if (expression instanceof ConstantExpression) {
+                return true;
+            }
+            if (expression instanceof VariableExpression variable) {
+                return variable.getAccessedVariable() instanceof DynamicVariable && !assigned.contains(variable.getName());
+            }
+            if (expression instanceof ListExpression list) {
+                return list.getExpressions().stream().allMatch(this::dependsOnContextOnly);
+            }
+            return expression instanceof StaticMethodCallExpression call && isShared(call);
+        }
+
+        // Unambiguous rendering of the call: the constant 'names' and the variable names differ
+        private static String keyOf(Expression expression) {
+            if (expression instanceof ConstantExpression constant) {
+                Object value = constant.getValue();
+                if (value == null) {
+                    return "null";
+                }
+                String text = value.toString();
+                return value.getClass().getSimpleName() + ':' + text.length() + ':' + text;
+            }
+            if (expression instanceof VariableExpression variable) {
+                return '$' + variable.getName();
+            }
+            if (expression instanceof ListExpression list) {
+                return list.getExpressions().stream().map(Transformer::keyOf).collect(Collectors.joining(",", "[", "]"));
+            }
+            StaticMethodCallExpression call = (StaticMethodCallExpression) expression;
+            return call.getOwnerType().getName() + '.' + call.getMethod()
+                    + ((TupleExpression) call.getArguments()).getExpressions().stream()
+                    .map(Transformer::keyOf).collect(Collectors.joining(",", "(", ")"));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+// ============================================
+// SharedCalls.java
+// ============================================
+package com.provectus.formula;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.util.Map;
+
+/**
+ * Runtime support for formulas compiled for {@link FormulaEngine#evaluateAll}: function
+ * calls that depend only on constants and context variables are computed once per context
+ * and shared by all formulas of the call. Public because generated script classes call it.
+ */
+public final class SharedCalls {
+    /**
+     * Binding variable holding the shared results; not a valid Groovy identifier, so a
+     * formula cannot shadow it
+     */
+    static final String BINDING_VARIABLE = "formula.sharedCalls";
+
+    // ConcurrentHashMap cannot hold null results
+    private static final Object NULL = new Object();
+
+    private SharedCalls() {
+    }
+
+    /**
+     * {@code owner.method(arguments)}, or the result an earlier formula got for the same key
+     */
+    public static Object call(Script script, String key, Class<?> owner, String method, Object[] arguments) {
+        Binding binding = script.getBinding();
+        if (!binding.hasVariable(BINDING_VARIABLE)) {
+            return InvokerHelper.invokeStaticMethod(owner, method, arguments);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> results = (Map<String, Object>) binding.getVariable(BINDING_VARIABLE);
+        Object shared = results.get(key);
+        if (shared == null) {
+            // Not computeIfAbsent: the arguments may themselves be shared calls
+            Object value = InvokerHelper.invokeStaticMethod(owner, method, arguments);
+            shared = results.putIfAbsent(key, value == null ? NULL : value);
+            if (shared == null) {
+                return value;
+            }
+        }
+        return shared == NULL ? null : shared;
+    }
+}
@@ -0,0 +1,90 @@
+// ============================================
+// TypeProfile.java
+// ============================================
+package com.provectus.formula;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact runtime classes of a formula's variables over its first successful evaluations.
+ * The profile is stable while every evaluation passes the same variables with the same
+ * non-null classes; the first one that does not closes it for good.
+ */
+class TypeProfile {
+    private Map<String, Class<?>> types;
+    private Map<String, Object> sampleVariables;
+    private Object sampleResult;
+    private int samples;
+    private volatile boolean closed;
+
+    /**
+     * Record one evaluation. Returns true exactly once, when the profile reaches
+     * {@code threshold} samples while still stable.
+     */
+    boolean record(Map<String, Object> variables, Object result, int threshold) {
+        if (closed) {
+            return false;
+        }
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (!matches(variables)) {
+                // Polymorphic or null inputs: the formula stays dynamic
+                closed = true;
+                types = null;
+                sampleVariables = null;
+                sampleResult = null;
+                return false;
+            }
+            samples++;
+            sampleVariables = variables;
+            sampleResult = result;
+            if (samples >= threshold) {
+                closed = true;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    synchronized Map<String, Class<?>> getTypes() {
+        return types;
+    }
+
+    /**
+     * Variables of the last recorded evaluation, for checking a specialization against its result
+     */
+    synchronized Map<String, Object> getSampleVariables() {
+        return sampleVariables;
+    }
+
+    synchronized Object getSampleResult() {
+        return sampleResult;
+    }
+
+    private boolean matches(Map<String, Object> variables) {
+        if (types == null) {
+            Map<String, Class<?>> observed = new HashMap<>();
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                if (entry.getValue() == null) {
+                    return false;
+                }
+                observed.put(entry.getKey(), entry.getValue().getClass());
+            }
+            types = observed;
+            return true;
+        }
+        if (types.size() != variables.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null || types.get(entry.getKey()) != value.getClass()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
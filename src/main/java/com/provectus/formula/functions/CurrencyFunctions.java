@@ -4,15 +4,20 @@
 package com.provectus.formula.functions;
 
 import com.provectus.formula.service.CurrencyService;
+import com.provectus.formula.service.Money;
+
+import java.util.List;
+import java.util.stream.DoubleStream;
 
 public class CurrencyFunctions {
-    private static CurrencyService currencyService;
+    // Not named currencyService: the static star import would shadow the formula binding of that name
+    private static CurrencyService sharedService;
 
     /**
      * Set the currency service instance (to be called from Spring context)
      */
     public static void setCurrencyService(CurrencyService service) {
-        currencyService = service;
+        sharedService = service;
     }
 
     /**
@@ -23,10 +28,58 @@ public class CurrencyFunctions {
      * @return Converted amount
      */
     public static double convertCurrency(String sourceCurrency, String targetCurrency, double value) {
-        if (currencyService == null) {
+        if (sharedService == null) {
             throw new IllegalStateException("CurrencyService not initialized");
         }
-        return currencyService.convert(sourceCurrency, targetCurrency, value);
+        return sharedService.convert(sourceCurrency, targetCurrency, value);
+    }
+
+    /**
+     * Convert an array of amounts, looking up the exchange rate once
+     * @param sourceCurrency Source currency code
+     * @param targetCurrency Target currency code
+     * @param values Amounts to convert
+     * @return Converted amounts
+     */
+    public static double[] convertCurrency(String sourceCurrency, String targetCurrency, double[] values) {
+        return requireService().convert(sourceCurrency, targetCurrency, values);
+    }
+
+    /**
+     * Convert a list of amounts, looking up the exchange rate once
+     */
+    public static List<Double> convertCurrency(String sourceCurrency, String targetCurrency, List<? extends Number> values) {
+        return requireService().convert(sourceCurrency, targetCurrency, values);
+    }
+
+    /**
+     * Convert a stream of amounts, looking up the exchange rate once
+     */
+    public static DoubleStream convertCurrency(String sourceCurrency, String targetCurrency, DoubleStream values) {
+        return requireService().convert(sourceCurrency, targetCurrency, values);
+    }
+
+    /**
+     * Convert amounts in mixed currencies, looking up each distinct source currency once
+     * @param sourceCurrencies Source currency code of each amount
+     * @param targetCurrency Target currency code
+     * @param values Amounts to convert
+     * @return Converted amounts, in input order
+     */
+    public static double[] convertCurrency(String[] sourceCurrencies, String targetCurrency, double[] values) {
+        return requireService().convert(sourceCurrencies, targetCurrency, values);
+    }
+
+    /**
+     * Convert amounts in mixed currencies given as lists
+     */
+    public static double[] convertCurrency(List<String> sourceCurrencies, String targetCurrency, List<? extends Number> values) {
+        double[] amounts = new double[values.size()];
+        int i = 0;
+        for (Number value : values) {
+            amounts[i++] = value.doubleValue();
+        }
+        return convertCurrency(sourceCurrencies.toArray(new String[0]), targetCurrency, amounts);
     }
 
     /**
@@ -36,19 +89,65 @@ public class CurrencyFunctions {
      * @return Converted amount in USD
      */
     public static double convertToUSD(String sourceCurrency, double value) {
-        if (currencyService == null) {
+        if (sharedService == null) {
             throw new IllegalStateException("CurrencyService not initialized");
         }
-        return currencyService.convertToUSD(sourceCurrency, value);
+        return sharedService.convertToUSD(sourceCurrency, value);
+    }
+
+    /**
+     * Convert an array of amounts to USD, looking up the exchange rate once
+     */
+    public static double[] convertToUSD(String sourceCurrency, double[] values) {
+        return convertCurrency(sourceCurrency, "USD", values);
+    }
+
+    /**
+     * Convert amounts in mixed currencies to USD, looking up each distinct source currency once
+     */
+    public static double[] convertToUSD(String[] sourceCurrencies, double[] values) {
+        return convertCurrency(sourceCurrencies, "USD", values);
+    }
+
+    /**
+     * Fixed-point amount, rounded to the currency's minor unit, e.g. money('EUR', 10.25)
+     */
+    public static Money money(String currency, Number amount) {
+        return Money.of(currency, amount);
+    }
+
+    /**
+     * Convert a fixed-point amount, rounding once to the target currency's minor unit
+     */
+    public static Money convertCurrency(Money amount, String targetCurrency) {
+        return requireService().convert(amount, targetCurrency);
+    }
+
+    public static Money convertToUSD(Money amount) {
+        return convertCurrency(amount, "USD");
+    }
+
+    /**
+     * Convert amounts in minor units (e.g. cents), looking up the exchange rate once
+     */
+    public static long[] convertCurrency(String sourceCurrency, String targetCurrency, long[] minorUnits) {
+        return requireService().convert(sourceCurrency, targetCurrency, minorUnits);
     }
 
     /**
      * Get exchange rate between two currencies
      */
     public static double exchangeRate(String sourceCurrency, String targetCurrency) {
-        if (currencyService == null) {
+        if (sharedService == null) {
+            throw new IllegalStateException("CurrencyService not initialized");
+        }
+        return sharedService.getExchangeRate(sourceCurrency, targetCurrency);
+    }
+
+    private static CurrencyService requireService() {
+        if (sharedService == null) {
             throw new IllegalStateException("CurrencyService not initialized");
         }
-        return currencyService.getExchangeRate(sourceCurrency, targetCurrency);
+        return sharedService;
     }
 }
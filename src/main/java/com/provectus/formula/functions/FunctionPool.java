@@ -0,0 +1,30 @@
+// ============================================
+// FunctionPool.java
+// ============================================
+package com.provectus.formula.functions;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Fork/join pool that carries the settings of the function libraries for the formulas it runs,
+ * so each engine configures its own pool instead of process-wide static state.
+ */
+public class FunctionPool extends ForkJoinPool {
+    private final int stringsParallelThreshold;
+
+    public FunctionPool(int parallelism, ForkJoinWorkerThreadFactory factory, int maximumPoolSize,
+                        Predicate<? super ForkJoinPool> saturate, long keepAliveTime, TimeUnit unit,
+                        int stringsParallelThreshold) {
+        super(parallelism, factory, null, false, 0, maximumPoolSize, 1, saturate, keepAliveTime, unit);
+        this.stringsParallelThreshold = Math.max(1, stringsParallelThreshold);
+    }
+
+    /**
+     * Number of strings below which the parallel* string functions run on the calling thread
+     */
+    public int getStringsParallelThreshold() {
+        return stringsParallelThreshold;
+    }
+}
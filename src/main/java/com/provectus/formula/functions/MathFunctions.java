@@ -21,4 +21,39 @@ public class MathFunctions {
     public static double compound(double principal, double rate, int years) {
         return principal * Math.pow(1 + rate / 100, years);
     }
-}
\ No newline at end of file
+
+    // Array variants give the same results as calling the scalar function per element,
+    // using SIMD kernels when built and run with the jdk.incubator.vector module
+
+    public static double[] square(double[] values) {
+        double[] result = new double[values.length];
+        MathKernels.INSTANCE.square(values, result);
+        return result;
+    }
+
+    public static double[] cube(double[] values) {
+        double[] result = new double[values.length];
+        MathKernels.INSTANCE.cube(values, result);
+        return result;
+    }
+
+    public static double[] percentage(double[] values, double percent) {
+        double[] result = new double[values.length];
+        MathKernels.INSTANCE.percentage(values, percent, result);
+        return result;
+    }
+
+    public static double[] discount(double[] prices, double discountPercent) {
+        double[] result = new double[prices.length];
+        MathKernels.INSTANCE.discount(prices, discountPercent, result);
+        return result;
+    }
+
+    public static double[] compound(double[] principals, double rate, int years) {
+        // Every element grows by the same factor, so pow runs once
+        double factor = Math.pow(1 + rate / 100, years);
+        double[] result = new double[principals.length];
+        MathKernels.INSTANCE.scale(principals, factor, result);
+        return result;
+    }
+}
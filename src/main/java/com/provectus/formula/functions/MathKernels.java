@@ -0,0 +1,58 @@
+// ============================================
+// MathKernels.java
+// ============================================
+package com.provectus.formula.functions;
+
+/**
+ * Scalar loops behind the MathFunctions array variants. {@link #INSTANCE} is a
+ * {@code VectorMathKernels} when that class was built (the {@code vector} Maven profile)
+ * and the JVM was started with {@code --add-modules jdk.incubator.vector}; otherwise it is
+ * this class. Both give identical results.
+ */
+class MathKernels {
+    static final MathKernels INSTANCE = load();
+
+    void square(double[] values, double[] result) {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * values[i];
+        }
+    }
+
+    void cube(double[] values, double[] result) {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * values[i] * values[i];
+        }
+    }
+
+    void percentage(double[] values, double percent, double[] result) {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (values[i] * percent) / 100.0;
+        }
+    }
+
+    void discount(double[] prices, double percent, double[] result) {
+        for (int i = 0; i < prices.length; i++) {
+            result[i] = prices[i] - (prices[i] * percent) / 100.0;
+        }
+    }
+
+    void scale(double[] values, double factor, double[] result) {
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * factor;
+        }
+    }
+
+    private static MathKernels load() {
+        if (Boolean.getBoolean("formula.math.scalar")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new MathKernels();
+        }
+        try {
+            return (MathKernels) Class.forName("com.provectus.formula.functions.VectorMathKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Built without the vector profile
+            return new MathKernels();
+        }
+    }
+}
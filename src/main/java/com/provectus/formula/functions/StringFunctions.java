@@ -5,8 +5,19 @@ package com.provectus.formula.functions;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 public class StringFunctions {
+    /**
+     * Strings below which the parallel* functions run on the calling thread, unless called
+     * from a {@link FunctionPool} with its own threshold
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
     
     /**
      * Count total number of letters in an array of strings
@@ -19,24 +30,35 @@ public class StringFunctions {
         int count = 0;
         for (String str : strings) {
             if (str != null) {
-                for (char c : str.toCharArray()) {
-                    if (Character.isLetter(c)) {
-                        count++;
-                    }
-                }
+                count += letters(str);
             }
         }
         return count;
     }
     
     /**
-     * Count total number of letters in a list of strings
+     * Count total number of letters in a list or other collection of strings, without copying it
      */
-    public static int countLetters(List<String> strings) {
-        if (strings == null || strings.isEmpty()) {
-            return 0;
-        }
-        return countLetters(strings.toArray(new String[0]));
+    public static int countLetters(Iterable<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::letters);
+    }
+
+    /**
+     * Count total number of letters in a stream of strings, in parallel if the stream is parallel
+     */
+    public static int countLetters(Stream<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::letters);
+    }
+
+    /**
+     * Count letters, splitting large lists across the parallel pool
+     */
+    public static int parallelCountLetters(List<? extends CharSequence> strings) {
+        return parallelTextStats(strings).getLetters();
+    }
+
+    public static int parallelCountLetters(String[] strings) {
+        return parallelTextStats(strings).getLetters();
     }
     
     /**
@@ -57,7 +79,8 @@ public class StringFunctions {
     }
     
     /**
-     * Count words in array of strings
+     * Count words in array of strings. A word is a run of characters other than
+     * the whitespace matched by the regex {@code \s}.
      */
     public static int countWords(String[] strings) {
         if (strings == null || strings.length == 0) {
@@ -66,13 +89,29 @@ public class StringFunctions {
         
         int count = 0;
         for (String str : strings) {
-            if (str != null && !str.trim().isEmpty()) {
-                count += str.trim().split("\\s+").length;
+            if (str != null) {
+                count += words(str);
             }
         }
         return count;
     }
     
+    public static int countWords(Iterable<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::words);
+    }
+
+    public static int countWords(Stream<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::words);
+    }
+
+    public static int parallelCountWords(List<? extends CharSequence> strings) {
+        return parallelTextStats(strings).getWords();
+    }
+
+    public static int parallelCountWords(String[] strings) {
+        return parallelTextStats(strings).getWords();
+    }
+    
     /**
      * Get average word length across all strings
      */
@@ -80,11 +119,15 @@ public class StringFunctions {
         if (strings == null || strings.length == 0) {
             return 0.0;
         }
-        
-        int totalLetters = countLetters(strings);
-        int totalWords = countWords(strings);
-        
-        return totalWords > 0 ? (double) totalLetters / totalWords : 0.0;
+        return textStats(strings).getAverageWordLength();
+    }
+
+    public static double averageWordLength(Iterable<? extends CharSequence> strings) {
+        return textStats(strings).getAverageWordLength();
+    }
+
+    public static double averageWordLength(Stream<? extends CharSequence> strings) {
+        return textStats(strings).getAverageWordLength();
     }
     
     /**
@@ -106,24 +149,331 @@ public class StringFunctions {
         }
         
         int count = 0;
-        String vowels = "aeiouAEIOU";
-        
         for (String str : strings) {
             if (str != null) {
-                for (char c : str.toCharArray()) {
-                    if (vowels.indexOf(c) != -1) {
-                        count++;
-                    }
-                }
+                count += vowels(str);
             }
         }
         return count;
     }
     
+    public static int countVowels(Iterable<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::vowels);
+    }
+
+    public static int countVowels(Stream<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::vowels);
+    }
+
+    public static int parallelCountVowels(List<? extends CharSequence> strings) {
+        return parallelTextStats(strings).getVowels();
+    }
+
+    public static int parallelCountVowels(String[] strings) {
+        return parallelTextStats(strings).getVowels();
+    }
+    
     /**
      * Count consonants in array of strings
      */
     public static int countConsonants(String[] strings) {
-        return countLetters(strings) - countVowels(strings);
+        if (strings == null || strings.length == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        for (String str : strings) {
+            if (str != null) {
+                count += consonants(str);
+            }
+        }
+        return count;
+    }
+
+    public static int countConsonants(Iterable<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::consonants);
+    }
+
+    public static int countConsonants(Stream<? extends CharSequence> strings) {
+        return sum(strings, StringFunctions::consonants);
+    }
+
+    public static int parallelCountConsonants(List<? extends CharSequence> strings) {
+        return parallelTextStats(strings).getConsonants();
+    }
+
+    public static int parallelCountConsonants(String[] strings) {
+        return parallelTextStats(strings).getConsonants();
+    }
+
+    /**
+     * Count letters, vowels, words and characters of all strings in a single pass
+     */
+    public static TextStats textStats(String[] strings) {
+        TextStats stats = new TextStats();
+        if (strings != null) {
+            for (String str : strings) {
+                if (str != null) {
+                    stats.add(str);
+                }
+            }
+        }
+        return stats;
+    }
+
+    public static TextStats textStats(Iterable<? extends CharSequence> strings) {
+        TextStats stats = new TextStats();
+        if (strings != null) {
+            for (CharSequence str : strings) {
+                if (str != null) {
+                    stats.add(str);
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Text statistics of a stream, combining per-thread partial counts if the stream is parallel
+     */
+    public static TextStats textStats(Stream<? extends CharSequence> strings) {
+        if (strings == null) {
+            return new TextStats();
+        }
+        return strings.collect(TextStats::new, (stats, str) -> {
+            if (str != null) {
+                stats.add(str);
+            }
+        }, TextStats::merge);
+    }
+
+    /**
+     * Text statistics of a large list computed in chunks on the calling fork/join pool (the engine's
+     * pool for formulas running there), or the common pool. Lists shorter than the parallel
+     * threshold (the calling {@link FunctionPool}'s, else {@link #DEFAULT_PARALLEL_THRESHOLD}),
+     * or without random access, are scanned on the calling thread.
+     */
+    public static TextStats parallelTextStats(List<? extends CharSequence> strings) {
+        if (strings == null) {
+            return new TextStats();
+        }
+        ForkJoinPool current = ForkJoinTask.getPool();
+        int parallelThreshold = current instanceof FunctionPool functionPool
+                ? functionPool.getStringsParallelThreshold() : DEFAULT_PARALLEL_THRESHOLD;
+        if (strings.size() < parallelThreshold || !(strings instanceof RandomAccess)) {
+            return textStats(strings);
+        }
+        ForkJoinPool pool = current != null ? current : ForkJoinPool.commonPool();
+        int chunkSize = Math.max(parallelThreshold, strings.size() / (pool.getParallelism() * 4));
+        return pool.invoke(new TextStatsTask(strings, 0, strings.size(), chunkSize));
+    }
+
+    public static TextStats parallelTextStats(String[] strings) {
+        return parallelTextStats(strings == null ? null : Arrays.asList(strings));
+    }
+
+    /**
+     * Letter, vowel, word and character counts gathered by {@link #textStats(String[])}
+     */
+    public static final class TextStats {
+        private int letters;
+        private int vowels;
+        private int words;
+        private int chars;
+
+        TextStats() {
+        }
+
+        void add(CharSequence str) {
+            int length = str.length();
+            int start = trimmedStart(str);
+            int end = trimmedEnd(str, start);
+            boolean inWord = false;
+            for (int i = 0; i < length; i++) {
+                char c = str.charAt(i);
+                if (i < start || i >= end || isWhitespace(c)) {
+                    inWord = false;
+                    continue;
+                }
+                if (!inWord) {
+                    words++;
+                    inWord = true;
+                }
+                if (Character.isLetter(c)) {
+                    letters++;
+                    if (isVowel(c)) {
+                        vowels++;
+                    }
+                }
+            }
+            chars += length;
+        }
+
+        TextStats merge(TextStats other) {
+            letters += other.letters;
+            vowels += other.vowels;
+            words += other.words;
+            chars += other.chars;
+            return this;
+        }
+
+        public int getLetters() {
+            return letters;
+        }
+
+        public int getVowels() {
+            return vowels;
+        }
+
+        public int getConsonants() {
+            return letters - vowels;
+        }
+
+        public int getWords() {
+            return words;
+        }
+
+        public int getChars() {
+            return chars;
+        }
+
+        public double getAverageWordLength() {
+            return words > 0 ? (double) letters / words : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return "TextStats{letters=" + letters + ", vowels=" + vowels + ", words=" + words + ", chars=" + chars + '}';
+        }
+    }
+
+    private static int letters(CharSequence str) {
+        int count = 0;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            if (Character.isLetter(str.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int words(CharSequence str) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = trimmedStart(str), end = trimmedEnd(str, i); i < end; i++) {
+            if (isWhitespace(str.charAt(i))) {
+                inWord = false;
+            } else if (!inWord) {
+                count++;
+                inWord = true;
+            }
+        }
+        return count;
+    }
+
+    private static int vowels(CharSequence str) {
+        int count = 0;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            if (isVowel(str.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int consonants(CharSequence str) {
+        int count = 0;
+        for (int i = 0, length = str.length(); i < length; i++) {
+            char c = str.charAt(i);
+            if (Character.isLetter(c) && !isVowel(c)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int sum(Iterable<? extends CharSequence> strings, ToIntFunction<CharSequence> counter) {
+        if (strings == null) {
+            return 0;
+        }
+        int count = 0;
+        for (CharSequence str : strings) {
+            if (str != null) {
+                count += counter.applyAsInt(str);
+            }
+        }
+        return count;
+    }
+
+    private static int sum(Stream<? extends CharSequence> strings, ToIntFunction<CharSequence> counter) {
+        if (strings == null) {
+            return 0;
+        }
+        return strings.mapToInt(str -> str == null ? 0 : counter.applyAsInt(str)).sum();
+    }
+
+    private static boolean isVowel(char c) {
+        switch (c) {
+            case 'a': case 'e': case 'i': case 'o': case 'u':
+            case 'A': case 'E': case 'I': case 'O': case 'U':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Words are counted between the bounds String.trim() keeps, which drops every char <= ' '
+    private static int trimmedStart(CharSequence str) {
+        int start = 0;
+        while (start < str.length() && str.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimmedEnd(CharSequence str, int start) {
+        int end = str.length();
+        while (end > start && str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // The characters matched by the regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static final class TextStatsTask extends RecursiveTask<TextStats> {
+        private final List<? extends CharSequence> strings;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        TextStatsTask(List<? extends CharSequence> strings, int from, int to, int chunkSize) {
+            this.strings = strings;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected TextStats compute() {
+            if (to - from <= chunkSize) {
+                TextStats stats = new TextStats();
+                for (int i = from; i < to; i++) {
+                    CharSequence str = strings.get(i);
+                    if (str != null) {
+                        stats.add(str);
+                    }
+                }
+                return stats;
+            }
+            int middle = (from + to) >>> 1;
+            TextStatsTask left = new TextStatsTask(strings, from, middle, chunkSize);
+            left.fork();
+            TextStats right = new TextStatsTask(strings, middle, to, chunkSize).compute();
+            return left.join().merge(right);
+        }
     }
-}
\ No newline at end of file
+}
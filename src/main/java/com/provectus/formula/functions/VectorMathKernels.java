@@ -0,0 +1,74 @@
+// ============================================
+// VectorMathKernels.java
+// ============================================
+package com.provectus.formula.functions;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD loops behind the MathFunctions array variants. Each lane performs the same
+ * operations in the same order as the scalar function, so results are identical.
+ * Compiled only with the {@code vector} Maven profile; loaded by {@link MathKernels}.
+ */
+final class VectorMathKernels extends MathKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void square(double[] values, double[] result) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(values.length); i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            v.mul(v).intoArray(result, i);
+        }
+        for (; i < values.length; i++) {
+            result[i] = values[i] * values[i];
+        }
+    }
+
+    @Override
+    void cube(double[] values, double[] result) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(values.length); i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            v.mul(v).mul(v).intoArray(result, i);
+        }
+        for (; i < values.length; i++) {
+            result[i] = values[i] * values[i] * values[i];
+        }
+    }
+
+    @Override
+    void percentage(double[] values, double percent, double[] result) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(values.length); i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).mul(percent).div(100.0).intoArray(result, i);
+        }
+        for (; i < values.length; i++) {
+            result[i] = (values[i] * percent) / 100.0;
+        }
+    }
+
+    @Override
+    void discount(double[] prices, double percent, double[] result) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(prices.length); i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, prices, i);
+            v.sub(v.mul(percent).div(100.0)).intoArray(result, i);
+        }
+        for (; i < prices.length; i++) {
+            result[i] = prices[i] - (prices[i] * percent) / 100.0;
+        }
+    }
+
+    @Override
+    void scale(double[] values, double factor, double[] result) {
+        int i = 0;
+        for (int upper = SPECIES.loopBound(values.length); i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).mul(factor).intoArray(result, i);
+        }
+        for (; i < values.length; i++) {
+            result[i] = values[i] * factor;
+        }
+    }
+}
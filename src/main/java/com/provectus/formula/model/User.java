@@ -7,11 +7,15 @@ import jakarta.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_birthday_id", columnList = "birthday, id"))
+@EntityListeners(UserChangeListener.class)
 public class User {
 
+    // Pooled sequence ids (50 per round trip) keep Hibernate's JDBC insert batching enabled,
+    // which IDENTITY columns disable
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,74 @@
+// ============================================
+// UserChangeListener.java
+// ============================================
+package com.provectus.formula.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JPA entity listener forwarding {@link User} writes to every {@link UserChangeObserver} bean.
+ * Inside a transaction the writes are collected and the observers called once after commit,
+ * in write order, followed by {@link UserChangeObserver#changesCommitted()}, so rolled back
+ * writes are never seen.
+ * Bulk JPQL/SQL updates bypass entity callbacks and are not reported.
+ */
+public class UserChangeListener {
+    private static final Object PENDING_EVENTS = new Object();
+
+    private final ObjectProvider<UserChangeObserver> observers;
+
+    public UserChangeListener(ObjectProvider<UserChangeObserver> observers) {
+        this.observers = observers;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(User user) {
+        publish(observer -> observer.userSaved(user));
+    }
+
+    @PostRemove
+    public void removed(User user) {
+        publish(observer -> observer.userRemoved(user));
+    }
+
+    private void publish(Consumer<UserChangeObserver> event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            observers.orderedStream().forEach(event.andThen(UserChangeObserver::changesCommitted));
+            return;
+        }
+        // One synchronization per transaction, however many rows it writes
+        @SuppressWarnings("unchecked")
+        List<Consumer<UserChangeObserver>> pending =
+                (List<Consumer<UserChangeObserver>>) TransactionSynchronizationManager.getResource(PENDING_EVENTS);
+        if (pending == null) {
+            List<Consumer<UserChangeObserver>> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDING_EVENTS, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    events.forEach(e -> observers.orderedStream().forEach(e));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_EVENTS);
+                    if (status == STATUS_COMMITTED) {
+                        observers.orderedStream().forEach(UserChangeObserver::changesCommitted);
+                    }
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+}
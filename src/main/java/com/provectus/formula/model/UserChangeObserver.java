@@ -0,0 +1,27 @@
+// ============================================
+// UserChangeObserver.java
+// ============================================
+package com.provectus.formula.model;
+
+/**
+ * Spring bean notified of committed {@link User} writes, through {@link UserChangeListener}.
+ */
+public interface UserChangeObserver {
+
+    /**
+     * A user was inserted or updated
+     */
+    void userSaved(User user);
+
+    /**
+     * A user was deleted
+     */
+    void userRemoved(User user);
+
+    /**
+     * A transaction that wrote users committed, after all its writes were reported;
+     * outside a transaction, after each write
+     */
+    default void changesCommitted() {
+    }
+}
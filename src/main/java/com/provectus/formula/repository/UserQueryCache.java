@@ -0,0 +1,147 @@
+// ============================================
+// UserQueryCache.java
+// ============================================
+package com.provectus.formula.repository;
+
+import com.provectus.formula.model.User;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Bounded, expiring cache for {@link UserRepository} query results. Holds at most
+ * {@code maxEntries} keys, least recently used first out, each for at most {@code ttl}.
+ * User lists are stored by value: the cache keeps its own detached copies, and every caller,
+ * on a hit or a miss, gets fresh unmodifiable copies, so no caller can change what others read.
+ *
+ * <p>Each {@link #invalidate()} starts a new generation. Loads go through
+ * {@link #get(Object, Callable)} ({@code @Cacheable(sync = true)}), which records the generation
+ * before running the query and drops the result if an invalidation happened meanwhile, so a
+ * query racing a committed write never caches the old answer.
+ */
+public class UserQueryCache extends AbstractValueAdaptingCache {
+    private final String name;
+    private final long ttlNanos;
+    private final Map<Object, Entry> entries;
+    private long generation;
+
+    public UserQueryCache(String name, int maxEntries, Duration ttl) {
+        super(false);
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return entries;
+    }
+
+    @Override
+    protected synchronized Object lookup(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt() >= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return copy(entry.value());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        long loadGeneration;
+        synchronized (this) {
+            Object cached = lookup(key);
+            if (cached != null) {
+                return (T) fromStoreValue(cached);
+            }
+            loadGeneration = generation;
+        }
+        // The query runs unlocked; concurrent misses for the same key may each run it
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        Object stored = copy(toStoreValue(value));
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry(stored, System.nanoTime() + ttlNanos));
+            }
+        }
+        return (T) fromStoreValue(copy(stored));
+    }
+
+    /**
+     * Store a value computed outside {@link #get(Object, Callable)}; it cannot be checked
+     * against invalidations, so prefer loading through the cache
+     */
+    @Override
+    public void put(Object key, Object value) {
+        Entry entry = new Entry(copy(toStoreValue(value)), System.nanoTime() + ttlNanos);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized void evict(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        invalidate();
+    }
+
+    /**
+     * Drop every entry and every load still running, after data the queries read has changed
+     */
+    @Override
+    public synchronized boolean invalidate() {
+        generation++;
+        boolean hadEntries = !entries.isEmpty();
+        entries.clear();
+        return hadEntries;
+    }
+
+    private static Object copy(Object value) {
+        if (!(value instanceof List<?> list)) {
+            return value;
+        }
+        List<Object> copies = new ArrayList<>(list.size());
+        for (Object element : list) {
+            if (element instanceof User user) {
+                User copy = new User(user.getName(), user.getBirthday());
+                copy.setId(user.getId());
+                copies.add(copy);
+            } else {
+                copies.add(element);
+            }
+        }
+        return List.copyOf(copies);
+    }
+
+    private record Entry(Object value, long expiresAt) {
+    }
+}
@@ -0,0 +1,43 @@
+// ============================================
+// UserQueryCacheInvalidator.java
+// ============================================
+package com.provectus.formula.repository;
+
+import com.provectus.formula.model.User;
+import com.provectus.formula.model.UserChangeObserver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Clears the cached {@link UserRepository} query results once per committed transaction that
+ * wrote users. Any insert, update or delete can change the answer for every date, so the whole
+ * cache goes. A {@link UserQueryCache} also discards the result of any query that was already
+ * running when the write committed.
+ */
+@Component
+@ConditionalOnProperty(name = "formula.persistence.enabled", havingValue = "true", matchIfMissing = true)
+public class UserQueryCacheInvalidator implements UserChangeObserver {
+    private final CacheManager cacheManager;
+
+    public UserQueryCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void userSaved(User user) {
+    }
+
+    @Override
+    public void userRemoved(User user) {
+    }
+
+    @Override
+    public void changesCommitted() {
+        Cache cache = cacheManager.getCache(UserRepository.USERS_BORN_BEFORE_CACHE);
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+}
@@ -4,17 +4,75 @@
 package com.provectus.formula.repository;
 
 import com.provectus.formula.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    String USERS_BORN_BEFORE_CACHE = "usersBornBefore";
 
+    /**
+     * Users born before a date. Results are cached per date in a {@link UserQueryCache} and
+     * dropped once a transaction writing users commits (see {@link UserQueryCacheInvalidator}).
+     * Every call, cached or not, returns an unmodifiable list of detached copies of the users.
+     */
+    @Cacheable(cacheNames = USERS_BORN_BEFORE_CACHE, sync = true)
     @Query("SELECT u FROM User u WHERE u.birthday < :date")
     List<User> findUsersBornBefore(@Param("date") LocalDate date);
+
+    /**
+     * One page of users born before a date, in (birthday, id) order. Passing the position of the
+     * previous window's last element continues with a keyset predicate on the birthday index
+     * instead of an OFFSET, so every page costs the same.
+     */
+    Window<User> findByBirthdayBeforeOrderByBirthdayAscIdAsc(LocalDate date, ScrollPosition position, Limit limit);
+
+    /**
+     * Stream users born before a date as read-only entities, fetched from JDBC in chunks.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u WHERE u.birthday < :date")
+    Stream<User> streamUsersBornBefore(@Param("date") LocalDate date);
+
+    /**
+     * Stream all users as read-only entities. Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u")
+    Stream<User> streamAll();
+
+    /**
+     * Stream only the names of users born before a date, without loading entities.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.name FROM User u WHERE u.birthday < :date")
+    Stream<String> streamNamesBornBefore(@Param("date") LocalDate date);
+
+    /**
+     * All users as (id, birthday, name) rows ordered by birthday, without loading entities
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id, u.birthday, u.name FROM User u ORDER BY u.birthday, u.id")
+    List<Object[]> findSnapshotRows();
 }
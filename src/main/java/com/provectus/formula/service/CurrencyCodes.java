@@ -0,0 +1,102 @@
+// ============================================
+// CurrencyCodes.java
+// ============================================
+package com.provectus.formula.service;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide index of currency codes. Each ISO 4217 style code is normalized
+ * to upper case once and assigned a small, stable integer index, so rate tables
+ * can be plain arrays and repeated lookups skip the case conversion.
+ */
+public final class CurrencyCodes {
+    private static final Map<String, Integer> INDEX = new ConcurrentHashMap<>();
+    private static volatile String[] codes = new String[0];
+    private static volatile int[] fractionDigits = new int[0];
+
+    private CurrencyCodes() {
+    }
+
+    /**
+     * Get the index of a currency code, registering it on first use
+     * @param code Currency code in any case (e.g., "eur", "EUR")
+     * @return Index of the normalized code
+     */
+    public static int indexOf(String code) {
+        if (code == null) {
+            throw new IllegalArgumentException("Invalid currency code: null");
+        }
+        Integer index = INDEX.get(code);
+        if (index != null) {
+            return index;
+        }
+        if (code.length() != 3) {
+            throw new IllegalArgumentException("Invalid currency code: " + code);
+        }
+        String normalized = code.toUpperCase(Locale.ROOT);
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                throw new IllegalArgumentException("Invalid currency code: " + code);
+            }
+        }
+
+        int normalizedIndex = register(normalized);
+        // Remember the caller's spelling too, so "eur" resolves without upper-casing next time
+        INDEX.putIfAbsent(code, normalizedIndex);
+        return normalizedIndex;
+    }
+
+    /**
+     * Get the normalized currency code for an index
+     */
+    public static String codeOf(int index) {
+        return codes[index];
+    }
+
+    /**
+     * Number of minor-unit digits of a currency (2 for EUR, 0 for JPY, 3 for KWD).
+     * Codes unknown to the JDK default to 2.
+     */
+    public static int fractionDigits(int index) {
+        return fractionDigits[index];
+    }
+
+    /**
+     * Number of currency codes registered so far
+     */
+    public static int size() {
+        return codes.length;
+    }
+
+    private static synchronized int register(String normalized) {
+        Integer existing = INDEX.get(normalized);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = codes;
+        String[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = normalized.intern();
+        int[] digits = Arrays.copyOf(fractionDigits, current.length + 1);
+        digits[current.length] = defaultFractionDigits(normalized);
+        // Publish digits before the code, so any index readers can see has its digits too
+        fractionDigits = digits;
+        codes = updated;
+        INDEX.put(updated[current.length], current.length);
+        return current.length;
+    }
+
+    private static int defaultFractionDigits(String code) {
+        try {
+            int digits = Currency.getInstance(code).getDefaultFractionDigits();
+            return digits >= 0 ? digits : 2;
+        } catch (IllegalArgumentException e) {
+            return 2;
+        }
+    }
+}
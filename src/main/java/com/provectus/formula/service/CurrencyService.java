@@ -3,23 +3,45 @@
 // ============================================
 package com.provectus.formula.service;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.DoubleStream;
 
 @Service
 public class CurrencyService {
     private static final String API_URL = "https://api.exchangerate-api.com/v4/latest/";
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    // Created on first download, so formulas without currency lookups never load the HTTP client
+    private RestTemplate restTemplate;
+    private final JsonFactory jsonFactory;
+    private final Map<Integer, CachedRates> rateCache = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<RateTable>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService prefetchExecutor;
+
+    @Value("${currency.rates.ttl:PT1M}")
+    private Duration ratesTtl = Duration.ofMinutes(1);
+
+    @Value("${currency.rates.prefetch-threads:4}")
+    private int prefetchThreads = 4;
 
     public CurrencyService() {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+        this.jsonFactory = new JsonFactory();
     }
 
     /**
@@ -30,24 +52,111 @@ public class CurrencyService {
      * @return Converted amount
      */
     public double convert(String sourceCurrency, String targetCurrency, double value) {
-        try {
-            String url = API_URL + sourceCurrency.toUpperCase();
-            String response = restTemplate.getForObject(url, String.class);
+        return value * getExchangeRate(sourceCurrency, targetCurrency);
+    }
 
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode rates = root.get("rates");
+    /**
+     * Convert an array of amounts, resolving the exchange rate only once
+     * @param sourceCurrency Source currency code (e.g., "EUR")
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @param values Amounts to convert
+     * @return New array with the converted amounts
+     */
+    public double[] convert(String sourceCurrency, String targetCurrency, double[] values) {
+        double rate = getExchangeRate(sourceCurrency, targetCurrency);
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * rate;
+        }
+        return result;
+    }
 
-            if (rates.has(targetCurrency.toUpperCase())) {
-                double rate = rates.get(targetCurrency.toUpperCase()).asDouble();
-                return value * rate;
-            } else {
-                throw new IllegalArgumentException("Target currency not found: " + targetCurrency);
+    /**
+     * Convert a list of amounts, resolving the exchange rate only once
+     * @param sourceCurrency Source currency code (e.g., "EUR")
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @param values Amounts to convert
+     * @return New list with the converted amounts
+     */
+    public List<Double> convert(String sourceCurrency, String targetCurrency, List<? extends Number> values) {
+        double rate = getExchangeRate(sourceCurrency, targetCurrency);
+        List<Double> result = new ArrayList<>(values.size());
+        for (Number value : values) {
+            result.add(value.doubleValue() * rate);
+        }
+        return result;
+    }
+
+    /**
+     * Convert a stream of amounts. The exchange rate is resolved eagerly, once,
+     * before the returned stream is consumed.
+     * @param sourceCurrency Source currency code (e.g., "EUR")
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @param values Amounts to convert
+     * @return Stream of converted amounts
+     */
+    public DoubleStream convert(String sourceCurrency, String targetCurrency, DoubleStream values) {
+        double rate = getExchangeRate(sourceCurrency, targetCurrency);
+        return values.map(value -> value * rate);
+    }
+
+    /**
+     * Convert amounts given in mixed currencies into a single target currency.
+     * Each distinct source currency is resolved once, regardless of how many rows use it.
+     * @param sourceCurrencies Source currency code of each row
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @param values Amount of each row
+     * @return New array with the converted amounts, in row order
+     */
+    public double[] convert(String[] sourceCurrencies, String targetCurrency, double[] values) {
+        if (sourceCurrencies.length != values.length) {
+            throw new IllegalArgumentException("Expected one currency per amount, got "
+                    + sourceCurrencies.length + " currencies for " + values.length + " amounts");
+        }
+
+        Map<String, Double> rates = new HashMap<>();
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String sourceCurrency = sourceCurrencies[i];
+            Double rate = rates.get(sourceCurrency);
+            if (rate == null) {
+                rate = getExchangeRate(sourceCurrency, targetCurrency);
+                rates.put(sourceCurrency, rate);
             }
-        } catch (RestClientException e) {
-            throw new RuntimeException("Failed to fetch exchange rates: " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Error converting currency: " + e.getMessage(), e);
+            result[i] = values[i] * rate;
         }
+        return result;
+    }
+
+    /**
+     * Convert a fixed-point amount, rounding once to the target currency's minor unit
+     * @param amount Amount to convert
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @return Converted amount
+     */
+    public Money convert(Money amount, String targetCurrency) {
+        int targetIndex = CurrencyCodes.indexOf(targetCurrency);
+        double factor = Money.minorUnitFactor(amount.getCurrencyIndex(), targetIndex,
+                getExchangeRate(amount.getCurrency(), targetCurrency));
+        return Money.ofMinor(targetIndex, Money.roundToMinor(amount.getMinorUnits() * factor));
+    }
+
+    /**
+     * Convert amounts given in minor units (e.g. cents), resolving the exchange rate only once
+     * and allocating nothing but the result array
+     * @param sourceCurrency Source currency code (e.g., "EUR")
+     * @param targetCurrency Target currency code (e.g., "USD")
+     * @param minorUnits Amounts in minor units of the source currency
+     * @return New array with the converted amounts in minor units of the target currency
+     */
+    public long[] convert(String sourceCurrency, String targetCurrency, long[] minorUnits) {
+        double factor = Money.minorUnitFactor(CurrencyCodes.indexOf(sourceCurrency), CurrencyCodes.indexOf(targetCurrency),
+                getExchangeRate(sourceCurrency, targetCurrency));
+        long[] result = new long[minorUnits.length];
+        for (int i = 0; i < minorUnits.length; i++) {
+            result[i] = Money.roundToMinor(minorUnits[i] * factor);
+        }
+        return result;
     }
 
     /**
@@ -67,6 +176,164 @@ public class CurrencyService {
      * @return Exchange rate
      */
     public double getExchangeRate(String sourceCurrency, String targetCurrency) {
-        return convert(sourceCurrency, targetCurrency, 1.0);
+        try {
+            int targetIndex = CurrencyCodes.indexOf(targetCurrency);
+            double rate = getRates(sourceCurrency).rate(targetIndex);
+
+            if (Double.isNaN(rate)) {
+                throw new IllegalArgumentException("Target currency not found: " + targetCurrency);
+            }
+            return rate;
+        } catch (RestClientException e) {
+            throw new RuntimeException("Failed to fetch exchange rates: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting currency: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetch all exchange rates from a base currency. Tables are cached for
+     * {@code currency.rates.ttl}, and concurrent requests for the same base share one download.
+     * @param baseCurrency Base currency code (e.g., "EUR")
+     * @return Rate table indexed by {@link CurrencyCodes} index
+     */
+    public RateTable getRates(String baseCurrency) throws IOException {
+        int baseIndex = CurrencyCodes.indexOf(baseCurrency);
+        RateTable cached = cachedRates(baseIndex);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<RateTable> download = new CompletableFuture<>();
+        CompletableFuture<RateTable> existing = inFlight.putIfAbsent(baseIndex, download);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            RateTable rates = fetchRates(baseIndex);
+            rateCache.put(baseIndex, new CachedRates(rates, System.nanoTime()));
+            download.complete(rates);
+            return rates;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(baseIndex, download);
+        }
+    }
+
+    /**
+     * Download the rate tables for several base currencies in parallel and cache them,
+     * so the conversions that follow do not each pay a round trip. Failures are ignored
+     * here; they surface again when the rate is actually used.
+     * @param baseCurrencies Base currency codes to fetch
+     */
+    public void prefetchRates(Collection<String> baseCurrencies) {
+        List<String> missing = new ArrayList<>();
+        for (String baseCurrency : baseCurrencies) {
+            try {
+                if (cachedRates(CurrencyCodes.indexOf(baseCurrency)) == null) {
+                    missing.add(baseCurrency);
+                }
+            } catch (IllegalArgumentException e) {
+                // Invalid code, the formula will report it when it runs
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        // Download all but one in the background and the last one on the calling thread
+        List<CompletableFuture<Void>> downloads = new ArrayList<>();
+        for (String baseCurrency : missing.subList(0, missing.size() - 1)) {
+            downloads.add(CompletableFuture.runAsync(() -> prefetch(baseCurrency), prefetchExecutor()));
+        }
+        prefetch(missing.get(missing.size() - 1));
+        CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * Download the raw exchange rate payload for a normalized base currency code
+     */
+    protected byte[] fetchRatesPayload(String baseCurrency) {
+        return restTemplate().getForObject(API_URL + baseCurrency, byte[].class);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    private RateTable fetchRates(int baseIndex) throws IOException {
+        byte[] payload = fetchRatesPayload(CurrencyCodes.codeOf(baseIndex));
+        if (payload == null) {
+            throw new IOException("Empty exchange rate response for " + CurrencyCodes.codeOf(baseIndex));
+        }
+        return RateTable.parse(jsonFactory, payload, baseIndex);
+    }
+
+    private RateTable cachedRates(int baseIndex) {
+        CachedRates cached = rateCache.get(baseIndex);
+        if (cached == null) {
+            return null;
+        }
+        if (System.nanoTime() - cached.fetchedAt >= ratesTtl.toNanos()) {
+            rateCache.remove(baseIndex, cached);
+            return null;
+        }
+        return cached.rates;
+    }
+
+    private void prefetch(String baseCurrency) {
+        try {
+            getRates(baseCurrency);
+        } catch (Exception e) {
+            // Reported by the conversion itself
+        }
+    }
+
+    private static RateTable await(CompletableFuture<RateTable> download) throws IOException {
+        try {
+            return download.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized RestTemplate restTemplate() {
+        if (restTemplate == null) {
+            restTemplate = new RestTemplate();
+        }
+        return restTemplate;
+    }
+
+    private synchronized ExecutorService prefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, prefetchThreads), runnable -> {
+                Thread thread = new Thread(runnable, "currency-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    private static final class CachedRates {
+        private final RateTable rates;
+        private final long fetchedAt;
+
+        private CachedRates(RateTable rates, long fetchedAt) {
+            this.rates = rates;
+            this.fetchedAt = fetchedAt;
+        }
     }
 }
@@ -0,0 +1,169 @@
+// ============================================
+// MaterializedAggregate.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.model.User;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Running sum of a per-user value over the users older than an age threshold
+ * (born strictly before {@code today.minusYears(minAgeYears)}). Users below the threshold
+ * wait in buckets by birthday and move into the total as the cutoff date advances.
+ * Reading is O(1) apart from the buckets that crossed the threshold since the last read.
+ */
+public class MaterializedAggregate {
+    private final String id;
+    private final int minAgeYears;
+    private final Function<User, ? extends Number> contribution;
+    private final Clock clock;
+
+    private final Map<Long, Member> members = new HashMap<>();
+    private final NavigableMap<Long, Bucket> pending = new TreeMap<>();
+    private long cutoffDay = Long.MIN_VALUE;
+    private long total;
+    private long count;
+    private boolean stale;
+
+    MaterializedAggregate(String id, int minAgeYears, Function<User, ? extends Number> contribution, Clock clock) {
+        this.id = id;
+        this.minAgeYears = minAgeYears;
+        this.contribution = contribution;
+        this.clock = clock;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getMinAgeYears() {
+        return minAgeYears;
+    }
+
+    /**
+     * Current sum over users older than the threshold
+     */
+    public long value() {
+        return value(LocalDate.now(clock));
+    }
+
+    /**
+     * Sum over users older than the threshold as of a given day
+     */
+    public synchronized long value(LocalDate today) {
+        advanceTo(today);
+        return total;
+    }
+
+    /**
+     * Number of users older than the threshold
+     */
+    public synchronized long count() {
+        advanceTo(LocalDate.now(clock));
+        return count;
+    }
+
+    /**
+     * Whether an update failed (e.g. the per-user function threw) and the value can no longer be trusted
+     */
+    public synchronized boolean isStale() {
+        return stale;
+    }
+
+    synchronized void reset() {
+        members.clear();
+        pending.clear();
+        total = 0;
+        count = 0;
+        stale = false;
+    }
+
+    synchronized void save(User user) {
+        try {
+            long value = contribution.apply(user).longValue();
+            Member previous = members.put(user.getId(), new Member(user.getBirthday().toEpochDay(), value));
+            if (previous != null) {
+                subtract(previous);
+            }
+            add(members.get(user.getId()));
+        } catch (RuntimeException e) {
+            stale = true;
+        }
+    }
+
+    synchronized void remove(User user) {
+        Member previous = members.remove(user.getId());
+        if (previous != null) {
+            subtract(previous);
+        }
+    }
+
+    private void advanceTo(LocalDate today) {
+        long cutoff = today.minusYears(minAgeYears).toEpochDay();
+        if (cutoff < cutoffDay) {
+            // Asked about an earlier day: re-bucket everyone against the earlier cutoff
+            pending.clear();
+            total = 0;
+            count = 0;
+            cutoffDay = cutoff;
+            for (Member member : members.values()) {
+                add(member);
+            }
+            return;
+        }
+
+        NavigableMap<Long, Bucket> crossed = pending.headMap(cutoff, false);
+        for (Bucket bucket : crossed.values()) {
+            total += bucket.sum;
+            count += bucket.count;
+        }
+        crossed.clear();
+        cutoffDay = cutoff;
+    }
+
+    private void add(Member member) {
+        if (member.epochDay < cutoffDay) {
+            total += member.value;
+            count++;
+        } else {
+            Bucket bucket = pending.computeIfAbsent(member.epochDay, day -> new Bucket());
+            bucket.sum += member.value;
+            bucket.count++;
+        }
+    }
+
+    private void subtract(Member member) {
+        if (member.epochDay < cutoffDay) {
+            total -= member.value;
+            count--;
+        } else {
+            Bucket bucket = pending.get(member.epochDay);
+            bucket.sum -= member.value;
+            if (--bucket.count == 0) {
+                pending.remove(member.epochDay);
+            }
+        }
+    }
+
+    private static final class Member {
+        private final long epochDay;
+        private final long value;
+
+        private Member(long epochDay, long value) {
+            this.epochDay = epochDay;
+            this.value = value;
+        }
+    }
+
+    private static final class Bucket {
+        private long sum;
+        private int count;
+    }
+}
@@ -0,0 +1,103 @@
+// ============================================
+// MaterializedAggregates.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.model.User;
+import com.provectus.formula.model.UserChangeObserver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of {@link MaterializedAggregate}s, kept up to date from committed user writes.
+ * Bound in formulas as {@code materializedAggregates}:
+ * <pre>
+ * materializedAggregates.register('letters_over_20', 20) { user -> user.name.replaceAll("\\s+", "").length() }
+ * materializedAggregates.value('letters_over_20')
+ * </pre>
+ */
+@Service
+@ConditionalOnProperty(name = "formula.persistence.enabled", havingValue = "true", matchIfMissing = true)
+public class MaterializedAggregates implements UserChangeObserver {
+    private final UserQueryService userQueries;
+    private final Clock clock;
+    private final Map<String, MaterializedAggregate> aggregates = new ConcurrentHashMap<>();
+
+    public MaterializedAggregates(UserQueryService userQueries, ObjectProvider<Clock> clock) {
+        this.userQueries = userQueries;
+        this.clock = clock.getIfAvailable(Clock::systemDefaultZone);
+    }
+
+    /**
+     * Register (or replace) an aggregate and compute its initial value with one scan of the users table
+     * @param id Name used to read the aggregate
+     * @param minAgeYears Users count once born before {@code today.minusYears(minAgeYears)}
+     * @param contribution Value each user adds to the sum
+     * @return The registered aggregate
+     */
+    public MaterializedAggregate register(String id, int minAgeYears, Function<User, ? extends Number> contribution) {
+        MaterializedAggregate aggregate = new MaterializedAggregate(id, minAgeYears, contribution, clock);
+        // Hold the aggregate while loading so writes committed meanwhile queue up behind the load
+        synchronized (aggregate) {
+            aggregates.put(id, aggregate);
+            rebuild(aggregate);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Get a registered aggregate
+     */
+    public MaterializedAggregate get(String id) {
+        MaterializedAggregate aggregate = aggregates.get(id);
+        if (aggregate == null) {
+            throw new IllegalArgumentException("No materialized aggregate registered as " + id);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Current value of a registered aggregate, recomputed first if an update had failed
+     */
+    public long value(String id) {
+        MaterializedAggregate aggregate = get(id);
+        if (aggregate.isStale()) {
+            synchronized (aggregate) {
+                rebuild(aggregate);
+            }
+        }
+        return aggregate.value();
+    }
+
+    public void unregister(String id) {
+        aggregates.remove(id);
+    }
+
+    @Override
+    public void userSaved(User user) {
+        for (MaterializedAggregate aggregate : aggregates.values()) {
+            aggregate.save(user);
+        }
+    }
+
+    @Override
+    public void userRemoved(User user) {
+        for (MaterializedAggregate aggregate : aggregates.values()) {
+            aggregate.remove(user);
+        }
+    }
+
+    private void rebuild(MaterializedAggregate aggregate) {
+        aggregate.reset();
+        userQueries.withAllUsers(users -> {
+            users.forEach(aggregate::save);
+            return null;
+        });
+    }
+}
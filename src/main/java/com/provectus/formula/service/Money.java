@@ -0,0 +1,241 @@
+// ============================================
+// Money.java
+// ============================================
+package com.provectus.formula.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable fixed-point amount: a long count of minor units (cents for EUR, yen for JPY)
+ * plus a {@link CurrencyCodes} index. Addition, subtraction and multiplication by an integer
+ * are exact; division by an integer is computed in integers and, like the other products,
+ * quotients and conversions, rounds once to the nearest minor unit, ties to even.
+ * Overflow throws {@link ArithmeticException} instead of wrapping. Every operation returns a
+ * new instance; converting many amounts without allocating one per amount is what the
+ * {@code long[]} overload of {@link CurrencyService#convert(String, String, long[])} is for.
+ *
+ * <p>The Groovy operator methods ({@code plus}, {@code minus}, {@code multiply}, {@code div},
+ * {@code negative}, {@code compareTo}) let formulas write {@code price * 3 - discount}.
+ */
+public final class Money implements Comparable<Money> {
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    // Doubles at or above this magnitude no longer fit in a long
+    private static final double LONG_LIMIT = 0x1p63;
+
+    private final long minorUnits;
+    private final int currency;
+
+    private Money(long minorUnits, int currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    /**
+     * Money from a count of minor units, e.g. {@code ofMinor("EUR", 1050)} is 10.50 EUR
+     */
+    public static Money ofMinor(String currency, long minorUnits) {
+        return new Money(minorUnits, CurrencyCodes.indexOf(currency));
+    }
+
+    public static Money ofMinor(int currencyIndex, long minorUnits) {
+        // Fails fast on an index that was never registered
+        CurrencyCodes.codeOf(currencyIndex);
+        return new Money(minorUnits, currencyIndex);
+    }
+
+    /**
+     * Money from a decimal amount, rounded to the currency's minor unit
+     */
+    public static Money of(String currency, BigDecimal amount) {
+        int index = CurrencyCodes.indexOf(currency);
+        BigDecimal minor = amount.movePointRight(CurrencyCodes.fractionDigits(index)).setScale(0, RoundingMode.HALF_EVEN);
+        if (minor.unscaledValue().bitLength() >= 64) {
+            throw new ArithmeticException("Money overflow: " + amount + " " + currency);
+        }
+        return new Money(minor.longValue(), index);
+    }
+
+    /**
+     * Money from a binary floating point amount, rounded to the currency's minor unit.
+     * Goes through the shortest decimal form of the double, so 0.1 becomes exactly 10 cents.
+     */
+    public static Money of(String currency, double amount) {
+        return of(currency, BigDecimal.valueOf(amount));
+    }
+
+    public static Money of(String currency, Number amount) {
+        if (amount instanceof BigDecimal decimal) {
+            return of(currency, decimal);
+        }
+        if (amount instanceof Long || amount instanceof Integer || amount instanceof Short || amount instanceof Byte) {
+            int index = CurrencyCodes.indexOf(currency);
+            return new Money(Math.multiplyExact(amount.longValue(), POWERS_OF_TEN[CurrencyCodes.fractionDigits(index)]), index);
+        }
+        return of(currency, amount.doubleValue());
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getCurrencyIndex() {
+        return currency;
+    }
+
+    public String getCurrency() {
+        return CurrencyCodes.codeOf(currency);
+    }
+
+    public int getFractionDigits() {
+        return CurrencyCodes.fractionDigits(currency);
+    }
+
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(minorUnits, getFractionDigits());
+    }
+
+    public double doubleValue() {
+        return minorUnits / (double) POWERS_OF_TEN[getFractionDigits()];
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negative() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public Money multiply(long factor) {
+        return new Money(Math.multiplyExact(minorUnits, factor), currency);
+    }
+
+    public Money multiply(double factor) {
+        return new Money(roundToMinor(minorUnits * factor), currency);
+    }
+
+    public Money multiply(BigDecimal factor) {
+        return new Money(BigDecimal.valueOf(minorUnits).multiply(factor).setScale(0, RoundingMode.HALF_EVEN).longValueExact(), currency);
+    }
+
+    public Money multiply(Number factor) {
+        if (factor instanceof BigDecimal decimal) {
+            return multiply(decimal);
+        }
+        if (factor instanceof Long || factor instanceof Integer || factor instanceof Short || factor instanceof Byte) {
+            return multiply(factor.longValue());
+        }
+        return multiply(factor.doubleValue());
+    }
+
+    public Money div(long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Money division by zero");
+        }
+        if (minorUnits == Long.MIN_VALUE && divisor == -1) {
+            throw new ArithmeticException("Money overflow: " + minorUnits + " / " + divisor + " minor units");
+        }
+        // Exact in integers: quotient plus remainder / divisor, a fraction in [0, 1)
+        long quotient = Math.floorDiv(minorUnits, divisor);
+        long remainder = Math.abs(Math.floorMod(minorUnits, divisor));
+        long magnitude = Math.abs(divisor); // Unsigned, so 2^63 for Long.MIN_VALUE
+        int half = Long.compareUnsigned(remainder, magnitude - remainder);
+        if (half > 0 || (half == 0 && (quotient & 1) != 0)) {
+            quotient = Math.addExact(quotient, 1);
+        }
+        return new Money(quotient, currency);
+    }
+
+    public Money div(double divisor) {
+        return new Money(roundToMinor(minorUnits / divisor), currency);
+    }
+
+    public Money div(BigDecimal divisor) {
+        return new Money(BigDecimal.valueOf(minorUnits).divide(divisor, 0, RoundingMode.HALF_EVEN).longValueExact(), currency);
+    }
+
+    public Money div(Number divisor) {
+        if (divisor instanceof BigDecimal decimal) {
+            return div(decimal);
+        }
+        if (divisor instanceof Long || divisor instanceof Integer || divisor instanceof Short || divisor instanceof Byte) {
+            return div(divisor.longValue());
+        }
+        return div(divisor.doubleValue());
+    }
+
+    /**
+     * Ratio of two amounts in the same currency
+     */
+    public double div(Money other) {
+        requireSameCurrency(other);
+        return minorUnits / (double) other.minorUnits;
+    }
+
+    /**
+     * Order amounts of the same currency. Amounts in different currencies are not comparable and
+     * throw {@link ClassCastException}, which Groovy's {@code ==} treats as "not equal".
+     */
+    @Override
+    public int compareTo(Money other) {
+        if (other.currency != currency) {
+            throw new ClassCastException("Currency mismatch: " + getCurrency() + " and " + other.getCurrency());
+        }
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money other)) {
+            return false;
+        }
+        return minorUnits == other.minorUnits && currency == other.currency;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency;
+    }
+
+    @Override
+    public String toString() {
+        return getAmount().toPlainString() + " " + getCurrency();
+    }
+
+    /**
+     * Round a minor-unit amount computed in floating point to the nearest long, ties to even
+     */
+    static long roundToMinor(double minor) {
+        double rounded = Math.rint(minor);
+        if (Double.isNaN(rounded) || Math.abs(rounded) >= LONG_LIMIT) {
+            throw new ArithmeticException("Money overflow: " + minor + " minor units");
+        }
+        return (long) rounded;
+    }
+
+    /**
+     * Factor taking minor units of one currency to minor units of another at a given rate
+     */
+    static double minorUnitFactor(int sourceCurrency, int targetCurrency, double rate) {
+        int shift = CurrencyCodes.fractionDigits(targetCurrency) - CurrencyCodes.fractionDigits(sourceCurrency);
+        return shift >= 0 ? rate * POWERS_OF_TEN[shift] : rate / POWERS_OF_TEN[-shift];
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Currency mismatch: " + getCurrency() + " and " + other.getCurrency());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+// ============================================
+// RateTable.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Exchange rates from one base currency, stored as a primitive array indexed
+ * by {@link CurrencyCodes} index. Missing rates are {@code NaN}.
+ */
+public final class RateTable {
+    private final int baseIndex;
+    private final double[] rates;
+
+    RateTable(int baseIndex, double[] rates) {
+        this.baseIndex = baseIndex;
+        this.rates = rates;
+    }
+
+    /**
+     * Parse an exchange rate API payload of the form {@code {"base": "EUR", "rates": {"USD": 1.08, ...}}}
+     * with a streaming parser, without building a JSON tree.
+     * @param jsonFactory Factory used to create the parser
+     * @param payload Raw JSON response body
+     * @param baseIndex Index of the currency the rates were requested for
+     * @return Parsed rate table
+     */
+    public static RateTable parse(JsonFactory jsonFactory, byte[] payload, int baseIndex) throws IOException {
+        double[] rates = newRates(CurrencyCodes.size());
+        boolean ratesFound = false;
+
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Exchange rate response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("rates".equals(field) && value == JsonToken.START_OBJECT) {
+                    ratesFound = true;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String code = parser.currentName();
+                        parser.nextToken();
+                        int index;
+                        try {
+                            index = CurrencyCodes.indexOf(code);
+                        } catch (IllegalArgumentException e) {
+                            // A key that is not a currency code must not cost the whole table
+                            parser.skipChildren();
+                            continue;
+                        }
+                        if (index >= rates.length) {
+                            rates = grow(rates, index + 1);
+                        }
+                        rates[index] = parser.getValueAsDouble(Double.NaN);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        if (!ratesFound) {
+            throw new IOException("Exchange rate response has no rates");
+        }
+        return new RateTable(baseIndex, rates);
+    }
+
+    /**
+     * Index of the base currency these rates convert from
+     */
+    public int getBaseIndex() {
+        return baseIndex;
+    }
+
+    /**
+     * Get the rate from the base currency to the given currency
+     * @param targetIndex Index of the target currency
+     * @return Exchange rate, or {@code NaN} when the payload had no rate for it
+     */
+    public double rate(int targetIndex) {
+        return targetIndex < rates.length ? rates[targetIndex] : Double.NaN;
+    }
+
+    private static double[] newRates(int size) {
+        double[] rates = new double[Math.max(size, 1)];
+        Arrays.fill(rates, Double.NaN);
+        return rates;
+    }
+
+    private static double[] grow(double[] rates, int minSize) {
+        double[] grown = newRates(Math.max(minSize, rates.length * 2));
+        System.arraycopy(rates, 0, grown, 0, rates.length);
+        return grown;
+    }
+}
@@ -0,0 +1,124 @@
+// ============================================
+// UserAggregation.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Aggregate over users that is translated into a single SQL aggregate query, so only
+ * the result crosses JDBC. Filters are combined with AND, for example:
+ * <pre>
+ * userQueries.aggregate().bornBefore(twentyYearsAgo).sumNameLetters()
+ * </pre>
+ */
+public class UserAggregation {
+    // Characters matched by the regex \s, removed by sumNameLetters()
+    private static final String[] WHITESPACE = {" ", "\t", "\n", "\u000B", "\f", "\r"};
+
+    private final EntityManager entityManager;
+    private final List<BiFunction<CriteriaBuilder, Root<User>, Predicate>> filters = new ArrayList<>();
+
+    UserAggregation(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Only users born strictly before the date
+     */
+    public UserAggregation bornBefore(LocalDate date) {
+        filters.add((cb, user) -> cb.lessThan(user.get("birthday"), date));
+        return this;
+    }
+
+    /**
+     * Only users born strictly after the date
+     */
+    public UserAggregation bornAfter(LocalDate date) {
+        filters.add((cb, user) -> cb.greaterThan(user.get("birthday"), date));
+        return this;
+    }
+
+    /**
+     * Only users whose name matches a SQL LIKE pattern (e.g., "A%")
+     */
+    public UserAggregation nameLike(String pattern) {
+        filters.add((cb, user) -> cb.like(user.get("name"), pattern));
+        return this;
+    }
+
+    /**
+     * Number of matching users
+     */
+    public long count() {
+        return select(Long.class, (cb, user) -> cb.count(user), 0L);
+    }
+
+    /**
+     * Total length of the names of matching users
+     */
+    public long sumNameLength() {
+        return select(Long.class, (cb, user) -> cb.sumAsLong(cb.length(user.get("name"))), 0L);
+    }
+
+    /**
+     * Total length of the names of matching users with all whitespace removed,
+     * equivalent to summing {@code name.replaceAll("\\s+", "").length()}
+     */
+    public long sumNameLetters() {
+        return select(Long.class, (cb, user) -> {
+            Expression<String> name = user.get("name");
+            for (String whitespace : WHITESPACE) {
+                name = cb.function("replace", String.class, name, cb.literal(whitespace), cb.literal(""));
+            }
+            return cb.sumAsLong(cb.length(name));
+        }, 0L);
+    }
+
+    /**
+     * Average name length of matching users, 0 when none match
+     */
+    public double avgNameLength() {
+        return select(Double.class, (cb, user) -> cb.avg(cb.length(user.get("name"))), 0.0);
+    }
+
+    /**
+     * Earliest birthday among matching users, or null when none match
+     */
+    public LocalDate minBirthday() {
+        return select(LocalDate.class, (cb, user) -> cb.least(user.<LocalDate>get("birthday")), null);
+    }
+
+    /**
+     * Latest birthday among matching users, or null when none match
+     */
+    public LocalDate maxBirthday() {
+        return select(LocalDate.class, (cb, user) -> cb.greatest(user.<LocalDate>get("birthday")), null);
+    }
+
+    private <T> T select(Class<T> type, BiFunction<CriteriaBuilder, Root<User>, Expression<T>> aggregate, T empty) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<User> user = query.from(User.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        for (BiFunction<CriteriaBuilder, Root<User>, Predicate> filter : filters) {
+            predicates.add(filter.apply(cb, user));
+        }
+        query.select(aggregate.apply(cb, user)).where(predicates.toArray(new Predicate[0]));
+
+        T result = entityManager.createQuery(query).getSingleResult();
+        return result != null ? result : empty;
+    }
+}
@@ -0,0 +1,114 @@
+// ============================================
+// UserBulkLoader.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.Csv;
+import com.provectus.formula.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams users from CSV into the database with batched inserts. Rows are read lazily,
+ * persisted in chunks of {@code formula.users.bulk-load.chunk-size} per transaction, and
+ * flushed and cleared every {@code hibernate.jdbc.batch_size} rows, so memory stays flat.
+ */
+@Service
+@ConditionalOnProperty(name = "formula.persistence.enabled", havingValue = "true", matchIfMissing = true)
+public class UserBulkLoader {
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Value("${formula.users.bulk-load.chunk-size:10000}")
+    private int chunkSize;
+
+    public UserBulkLoader(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Load users from a CSV file with {@code name,birthday} rows (ISO dates, optional header line)
+     * @param csv Path of the CSV file
+     * @return Number of users inserted
+     */
+    public long loadCsv(Path csv) throws IOException {
+        try (Reader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            return loadCsv(reader);
+        }
+    }
+
+    /**
+     * Load users from CSV text with {@code name,birthday} rows (ISO dates, optional header line).
+     * Names containing commas or quotes must be double-quoted, with "" for a quote inside them.
+     * @param reader Source of the CSV text
+     * @return Number of users inserted
+     */
+    public long loadCsv(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<User> chunk = new ArrayList<>(chunkSize);
+        long loaded = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase("name,birthday"))) {
+                continue;
+            }
+            chunk.add(parse(line, lineNumber));
+            if (chunk.size() == chunkSize) {
+                loaded += persist(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            loaded += persist(chunk);
+        }
+        return loaded;
+    }
+
+    private int persist(List<User> users) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < users.size(); i++) {
+                entityManager.persist(users.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+        return users.size();
+    }
+
+    private static User parse(String line, int lineNumber) {
+        List<String> fields = Csv.split(line);
+        if (fields.size() != 2) {
+            throw new IllegalArgumentException("Expected name,birthday on line " + lineNumber);
+        }
+        String birthday = fields.get(1);
+        try {
+            return new User(fields.get(0), LocalDate.parse(birthday));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid birthday on line " + lineNumber + ": " + birthday, e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// ============================================
+// UserQueryService.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.model.User;
+import com.provectus.formula.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Constant-memory user scans for formulas. Each method opens a read-only transaction,
+ * hands a stream to the given function and closes the stream when the function returns,
+ * so formulas can write {@code userQueries.withNamesBornBefore(date) { names -> ... }}.
+ */
+@Service
+@ConditionalOnProperty(name = "formula.persistence.enabled", havingValue = "true", matchIfMissing = true)
+public class UserQueryService {
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final UserRepository userRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserQueryService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Apply a function to the stream of users born before a date. Users are detached as
+     * they are read, so the persistence context does not grow with the result.
+     * @param date Exclusive upper bound for the birthday
+     * @param action Function consuming the stream; the stream is only valid during the call
+     * @return Result of the function
+     */
+    @Transactional(readOnly = true)
+    public <R> R withUsersBornBefore(LocalDate date, Function<Stream<User>, R> action) {
+        try (Stream<User> users = userRepository.streamUsersBornBefore(date)) {
+            return action.apply(detaching(users));
+        }
+    }
+
+    /**
+     * Apply a function to the stream of all users, detached as they are read
+     * @param action Function consuming the stream; the stream is only valid during the call
+     * @return Result of the function
+     */
+    @Transactional(readOnly = true)
+    public <R> R withAllUsers(Function<Stream<User>, R> action) {
+        try (Stream<User> users = userRepository.streamAll()) {
+            return action.apply(detaching(users));
+        }
+    }
+
+    /**
+     * Apply a function to the stream of names of users born before a date
+     * @param date Exclusive upper bound for the birthday
+     * @param action Function consuming the stream; the stream is only valid during the call
+     * @return Result of the function
+     */
+    @Transactional(readOnly = true)
+    public <R> R withNamesBornBefore(LocalDate date, Function<Stream<String>, R> action) {
+        try (Stream<String> names = userRepository.streamNamesBornBefore(date)) {
+            return action.apply(names);
+        }
+    }
+
+    /**
+     * Lazily iterate users born before a date in (birthday, id) order, one keyset page at a time.
+     * Only the current page is held in memory, and no transaction is kept open between pages.
+     * @param date Exclusive upper bound for the birthday
+     * @param pageSize Number of users fetched per query
+     * @return Iterator loading the next page when the current one is used up
+     */
+    public Iterator<User> iterateUsersBornBefore(LocalDate date, int pageSize) {
+        return WindowIterator.of(position -> userRepository.findByBirthdayBeforeOrderByBirthdayAscIdAsc(
+                        date, position, Limit.of(pageSize)))
+                .startingAt(ScrollPosition.keyset());
+    }
+
+    /**
+     * Lazily iterate users born before a date, 1000 per page
+     */
+    public Iterator<User> iterateUsersBornBefore(LocalDate date) {
+        return iterateUsersBornBefore(date, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Start an aggregate over users that is executed as a single SQL query,
+     * e.g. {@code userQueries.aggregate().bornBefore(date).sumNameLetters()}
+     */
+    public UserAggregation aggregate() {
+        return new UserAggregation(entityManager);
+    }
+
+    // Detach inside the iterator, which is only ever advanced by one thread at a time
+    // even when the formula makes the stream parallel
+    private Stream<User> detaching(Stream<User> users) {
+        Iterator<User> rows = users.iterator();
+        Iterator<User> detached = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public User next() {
+                User user = rows.next();
+                entityManager.detach(user);
+                return user;
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(detached, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
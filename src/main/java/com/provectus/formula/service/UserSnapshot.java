@@ -0,0 +1,241 @@
+// ============================================
+// UserSnapshot.java
+// ============================================
+package com.provectus.formula.service;
+
+import com.provectus.formula.model.User;
+import com.provectus.formula.model.UserChangeObserver;
+import com.provectus.formula.repository.UserRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Read-through, in-memory copy of all users in a columnar layout sorted by birthday.
+ * Loaded from the database on first use and then kept current from committed entity
+ * changes, so birthday range queries are a binary search and never touch JDBC.
+ * Enabled with {@code formula.users.snapshot.enabled=true}; bound in formulas as {@code userSnapshot}.
+ */
+@Component
+@ConditionalOnProperty(name = "formula.users.snapshot.enabled", havingValue = "true")
+public class UserSnapshot implements UserChangeObserver {
+    private static final Comparator<Row> BY_BIRTHDAY = Comparator.comparingLong((Row row) -> row.epochDay)
+            .thenComparingLong(row -> row.id);
+
+    private final UserRepository userRepository;
+    private final Queue<Row> pendingChanges = new ConcurrentLinkedQueue<>();
+    private volatile boolean tracking;
+    private volatile Columns columns;
+
+    public UserSnapshot(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Number of users in the snapshot
+     */
+    public int size() {
+        return current().ids.length;
+    }
+
+    /**
+     * Number of users born strictly before the date
+     */
+    public int countBornBefore(LocalDate date) {
+        return firstBornOnOrAfter(current(), date.toEpochDay());
+    }
+
+    /**
+     * Names of users born strictly before the date, oldest first. The list is a read-only view.
+     */
+    public List<String> namesBornBefore(LocalDate date) {
+        Columns snapshot = current();
+        return view(snapshot, 0, firstBornOnOrAfter(snapshot, date.toEpochDay()));
+    }
+
+    /**
+     * Names of users born on or after {@code from} and strictly before {@code to}, oldest first
+     */
+    public List<String> namesBornBetween(LocalDate from, LocalDate to) {
+        Columns snapshot = current();
+        int start = firstBornOnOrAfter(snapshot, from.toEpochDay());
+        int end = firstBornOnOrAfter(snapshot, to.toEpochDay());
+        return view(snapshot, start, Math.max(start, end));
+    }
+
+    /**
+     * Names of all users, oldest first
+     */
+    public List<String> names() {
+        Columns snapshot = current();
+        return view(snapshot, 0, snapshot.names.length);
+    }
+
+    /**
+     * Drop the snapshot; the next read loads it again from the database
+     */
+    public synchronized void refresh() {
+        tracking = false;
+        columns = null;
+        pendingChanges.clear();
+    }
+
+    @Override
+    public void userSaved(User user) {
+        if (tracking) {
+            pendingChanges.add(new Row(user.getId(), user.getBirthday().toEpochDay(), user.getName(), false));
+        }
+    }
+
+    @Override
+    public void userRemoved(User user) {
+        if (tracking) {
+            pendingChanges.add(new Row(user.getId(), 0, null, true));
+        }
+    }
+
+    private Columns current() {
+        Columns snapshot = columns;
+        if (snapshot == null || !pendingChanges.isEmpty()) {
+            snapshot = update();
+        }
+        return snapshot;
+    }
+
+    private synchronized Columns update() {
+        if (columns == null) {
+            // Start collecting changes before reading, so none committed during the load are lost;
+            // applying one that the load already saw is harmless
+            tracking = true;
+            pendingChanges.clear();
+            columns = load();
+        }
+        if (!pendingChanges.isEmpty()) {
+            columns = apply(columns);
+        }
+        return columns;
+    }
+
+    private Columns load() {
+        List<Object[]> rows = userRepository.findSnapshotRows();
+        int size = rows.size();
+        long[] ids = new long[size];
+        long[] epochDays = new long[size];
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            Object[] row = rows.get(i);
+            ids[i] = (Long) row[0];
+            epochDays[i] = ((LocalDate) row[1]).toEpochDay();
+            names[i] = (String) row[2];
+        }
+        return new Columns(ids, epochDays, names);
+    }
+
+    // Rebuild the columns with all queued changes merged in: O(n + k log k) for k changes
+    private Columns apply(Columns snapshot) {
+        Map<Long, Row> changes = new LinkedHashMap<>();
+        Row change;
+        while ((change = pendingChanges.poll()) != null) {
+            changes.put(change.id, change);
+        }
+
+        List<Row> upserts = new ArrayList<>();
+        for (Row row : changes.values()) {
+            if (!row.removed) {
+                upserts.add(row);
+            }
+        }
+        upserts.sort(BY_BIRTHDAY);
+        Set<Long> changedIds = new HashSet<>(changes.keySet());
+
+        int capacity = snapshot.ids.length + upserts.size();
+        long[] ids = new long[capacity];
+        long[] epochDays = new long[capacity];
+        String[] names = new String[capacity];
+        int size = 0;
+        int next = 0;
+        for (int i = 0; i < snapshot.ids.length; i++) {
+            if (changedIds.contains(snapshot.ids[i])) {
+                continue;
+            }
+            while (next < upserts.size() && before(upserts.get(next), snapshot.epochDays[i], snapshot.ids[i])) {
+                Row row = upserts.get(next++);
+                ids[size] = row.id;
+                epochDays[size] = row.epochDay;
+                names[size++] = row.name;
+            }
+            ids[size] = snapshot.ids[i];
+            epochDays[size] = snapshot.epochDays[i];
+            names[size++] = snapshot.names[i];
+        }
+        while (next < upserts.size()) {
+            Row row = upserts.get(next++);
+            ids[size] = row.id;
+            epochDays[size] = row.epochDay;
+            names[size++] = row.name;
+        }
+        return new Columns(Arrays.copyOf(ids, size), Arrays.copyOf(epochDays, size), Arrays.copyOf(names, size));
+    }
+
+    private static boolean before(Row row, long epochDay, long id) {
+        return row.epochDay < epochDay || (row.epochDay == epochDay && row.id < id);
+    }
+
+    // Index of the first user born on or after the day, i.e. the number born before it
+    private static int firstBornOnOrAfter(Columns snapshot, long epochDay) {
+        long[] days = snapshot.epochDays;
+        int low = 0;
+        int high = days.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> view(Columns snapshot, int from, int to) {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.names).subList(from, to));
+    }
+
+    private static final class Columns {
+        private final long[] ids;
+        private final long[] epochDays;
+        private final String[] names;
+
+        private Columns(long[] ids, long[] epochDays, String[] names) {
+            this.ids = ids;
+            this.epochDays = epochDays;
+            this.names = names;
+        }
+    }
+
+    private static final class Row {
+        private final long id;
+        private final long epochDay;
+        private final String name;
+        private final boolean removed;
+
+        private Row(long id, long epochDay, String name, boolean removed) {
+            this.id = id;
+            this.epochDay = epochDay;
+            this.name = name;
+            this.removed = removed;
+        }
+    }
+}
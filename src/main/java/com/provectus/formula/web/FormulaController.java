@@ -0,0 +1,183 @@
+// ============================================
+// FormulaController.java
+// ============================================
+package com.provectus.formula.web;
+
+import com.provectus.formula.CompiledFormula;
+import com.provectus.formula.FormulaContext;
+import com.provectus.formula.FormulaEngine;
+import com.provectus.formula.FormulaRegistry;
+import com.provectus.formula.FormulaResult;
+import com.provectus.formula.RegisteredFormula;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP access to the formula engine, only present when the application runs as a web
+ * server ({@code --server}). Formulas can be evaluated directly, or registered once in
+ * the {@link FormulaRegistry} and evaluated by id afterwards.
+ */
+@RestController
+@RequestMapping("/formulas")
+@ConditionalOnWebApplication
+public class FormulaController {
+    private final FormulaEngine engine;
+    private final FormulaRegistry registry;
+
+    public FormulaController(FormulaEngine engine, FormulaRegistry registry) {
+        this.engine = engine;
+        this.registry = registry;
+    }
+
+    @PostMapping("/evaluate")
+    public EvaluationResponse evaluate(@RequestBody EvaluationRequest request) {
+        return EvaluationResponse.of(engine.evaluate(requireFormula(request.formula()), context(request.variables())));
+    }
+
+    /**
+     * Evaluate one formula for many contexts, compiling it once
+     */
+    @PostMapping("/evaluate/batch")
+    public List<EvaluationResponse> evaluateBatch(@RequestBody BatchEvaluationRequest request) {
+        CompiledFormula compiled = compile(requireFormula(request.formula()));
+        List<EvaluationResponse> responses = new ArrayList<>();
+        if (request.contexts() != null) {
+            for (Map<String, Object> variables : request.contexts()) {
+                responses.add(EvaluationResponse.of(engine.evaluate(compiled, context(variables))));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Register a formula under an id derived from its source, so the same source always gets the same id
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompiledFormulaResponse compile(@RequestBody EvaluationRequest request) {
+        String formula = requireFormula(request.formula());
+        return CompiledFormulaResponse.of(register(idOf(formula), formula));
+    }
+
+    /**
+     * Register a formula under a chosen id, replacing its current version
+     */
+    @PutMapping("/{id}")
+    public CompiledFormulaResponse put(@PathVariable String id, @RequestBody EvaluationRequest request) {
+        return CompiledFormulaResponse.of(register(id, requireFormula(request.formula())));
+    }
+
+    @GetMapping
+    public List<CompiledFormulaResponse> list() {
+        return registry.list().stream().map(CompiledFormulaResponse::of).toList();
+    }
+
+    @GetMapping("/{id}")
+    public CompiledFormulaResponse get(@PathVariable String id) {
+        return CompiledFormulaResponse.of(find(id));
+    }
+
+    @PostMapping("/{id}/evaluate")
+    public EvaluationResponse evaluateById(@PathVariable String id, @RequestBody(required = false) Map<String, Object> variables) {
+        return EvaluationResponse.of(engine.evaluate(find(id).getCompiled(), context(variables)));
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable String id) {
+        if (!registry.remove(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown formula id: " + id);
+        }
+    }
+
+    private RegisteredFormula find(String id) {
+        return registry.get(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown formula id: " + id));
+    }
+
+    private RegisteredFormula register(String id, String formula) {
+        try {
+            return registry.register(id, formula);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private CompiledFormula compile(String formula) {
+        try {
+            return engine.compileFormula(formula);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private static String requireFormula(String formula) {
+        if (formula == null || formula.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "formula is required");
+        }
+        return formula;
+    }
+
+    private static FormulaContext context(Map<String, Object> variables) {
+        FormulaContext context = new FormulaContext();
+        if (variables != null) {
+            variables.forEach(context::setVariable);
+        }
+        return context;
+    }
+
+    private static String idOf(String formula) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(formula.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record EvaluationRequest(String formula, Map<String, Object> variables) {
+    }
+
+    public record BatchEvaluationRequest(String formula, List<Map<String, Object>> contexts) {
+    }
+
+    public record CompiledFormulaResponse(String id, int version, String formula) {
+
+        static CompiledFormulaResponse of(RegisteredFormula registered) {
+            return new CompiledFormulaResponse(registered.getId(), registered.getVersion(), registered.getSource());
+        }
+    }
+
+    public record EvaluationResponse(boolean success, Object value, String error) {
+
+        static EvaluationResponse of(FormulaResult result) {
+            if (!result.isSuccess()) {
+                return new EvaluationResponse(false, null, result.getErrorMessage());
+            }
+            Object value = result.getValue();
+            // Anything Jackson may not know how to write goes out as its string form
+            boolean plain = value == null || value instanceof Number || value instanceof Boolean || value instanceof CharSequence
+                    || value instanceof Collection || value instanceof Map;
+            return new EvaluationResponse(true, plain ? value : String.valueOf(value), null);
+        }
+    }
+}
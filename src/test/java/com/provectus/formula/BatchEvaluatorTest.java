@@ -0,0 +1,80 @@
+// ============================================
+// BatchEvaluatorTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.service.CurrencyService;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class BatchEvaluatorTest {
+
+    private final FormulaEngine engine = new FormulaEngine(new CurrencyService());
+
+    @Test
+    public void testCsvResultsKeepInputOrder() throws Exception {
+        StringBuilder input = new StringBuilder("price,qty,name\n");
+        StringBuilder expected = new StringBuilder("result,error\n");
+        for (int i = 0; i < 1000; i++) {
+            input.append(i).append(',').append(i % 7).append(",\"item, ").append(i).append("\"\n");
+            expected.append(i % 7 == 0 ? ",/ by zero\n" : "\"item, " + i + ": " + i / (i % 7) + "\",\n");
+        }
+        StringWriter out = new StringWriter();
+
+        BatchEvaluator.Stats stats = new BatchEvaluator(engine, 4)
+            .run("name + ': ' + price.intdiv(qty)", new BufferedReader(new StringReader(input.toString())), out);
+
+        assertEquals(expected.toString(), out.toString());
+        assertEquals(1000, stats.rows());
+        assertEquals(143, stats.errors());
+    }
+
+    @Test
+    public void testNdjsonInputWritesNdjson() throws Exception {
+        String input = """
+            {"price": 10, "qty": 3}
+            {"price": 2.5, "qty": 4}
+
+            {"price": "x", "qty": 2}
+            """;
+        StringWriter out = new StringWriter();
+
+        BatchEvaluator.Stats stats = new BatchEvaluator(engine, 2)
+            .run("price * qty", new BufferedReader(new StringReader(input)), out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"result\":30}", lines[0]);
+        assertEquals("{\"result\":10.0}", lines[1]);
+        assertEquals("{\"result\":\"xx\"}", lines[2]);
+        assertEquals(3, stats.rows());
+        assertEquals(0, stats.errors());
+    }
+
+    @Test
+    public void testMalformedRowsGetErrorLines() throws Exception {
+        StringWriter csvOut = new StringWriter();
+        BatchEvaluator.Stats csvStats = new BatchEvaluator(engine, 2)
+            .run("a + b", new BufferedReader(new StringReader("a,b\n1,2\n3\n4,5\n")), csvOut);
+
+        assertEquals("result,error\n3,\n,\"Expected 2 columns on line 3, got 1\"\n9,\n", csvOut.toString());
+        assertEquals(3, csvStats.rows());
+        assertEquals(1, csvStats.errors());
+
+        StringWriter jsonOut = new StringWriter();
+        BatchEvaluator.Stats jsonStats = new BatchEvaluator(engine, 2)
+            .run("a + b", new BufferedReader(new StringReader("{\"a\": 1, \"b\": 2}\n{\"a\": \n{\"a\": 4, \"b\": 5}\n")), jsonOut);
+
+        String[] lines = jsonOut.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"result\":3}", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith("{\"error\":\"Invalid JSON on line 2"));
+        assertEquals("{\"result\":9}", lines[2]);
+        assertEquals(1, jsonStats.errors());
+    }
+}
@@ -0,0 +1,225 @@
+// ============================================
+// CurrencyServiceTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.service.CurrencyCodes;
+import com.provectus.formula.service.CurrencyService;
+import com.provectus.formula.service.Money;
+import com.provectus.formula.service.RateTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.DoubleStream;
+
+import static org.junit.Assert.*;
+
+public class CurrencyServiceTest {
+
+    private StubCurrencyService currencyService;
+
+    @Before
+    public void setUp() {
+        currencyService = new StubCurrencyService(Map.of("EUR", 1.1, "GBP", 1.25, "USD", 1.0, "JPY", 0.0067));
+    }
+
+    @Test
+    public void testBulkArrayConversionResolvesRateOnce() {
+        double[] converted = currencyService.convert("EUR", "USD", new double[]{100.0, 200.0, 300.0});
+
+        assertArrayEquals(new double[]{110.0, 220.0, 330.0}, converted, 1e-9);
+        assertEquals(1, currencyService.lookups.size());
+    }
+
+    @Test
+    public void testBulkListConversion() {
+        List<Double> converted = currencyService.convert("GBP", "USD", Arrays.asList(10, 20.0, 40L));
+
+        assertEquals(3, converted.size());
+        assertEquals(12.5, converted.get(0), 1e-9);
+        assertEquals(25.0, converted.get(1), 1e-9);
+        assertEquals(50.0, converted.get(2), 1e-9);
+        assertEquals(1, currencyService.lookups.size());
+    }
+
+    @Test
+    public void testBulkStreamConversion() {
+        double total = currencyService.convert("EUR", "USD", DoubleStream.of(1.0, 2.0, 3.0)).sum();
+
+        assertEquals(6.6, total, 1e-9);
+        assertEquals(1, currencyService.lookups.size());
+    }
+
+    @Test
+    public void testMixedCurrencyConversionGroupsByCurrency() {
+        String[] currencies = {"EUR", "GBP", "EUR", "USD", "GBP", "EUR"};
+        double[] amounts = {10.0, 10.0, 20.0, 30.0, 40.0, 50.0};
+
+        double[] converted = currencyService.convert(currencies, "USD", amounts);
+
+        assertArrayEquals(new double[]{11.0, 12.5, 22.0, 30.0, 50.0, 55.0}, converted, 1e-9);
+        assertEquals(Arrays.asList("EUR", "GBP", "USD"), currencyService.lookups);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedCurrencyConversionRejectsLengthMismatch() {
+        currencyService.convert(new String[]{"EUR"}, "USD", new double[]{1.0, 2.0});
+    }
+
+    @Test
+    public void testParsesRatesPayload() throws Exception {
+        PayloadCurrencyService service = new PayloadCurrencyService(
+                "{\"provider\":\"test\",\"base\":\"EUR\",\"nested\":{\"rates\":[1,2]},"
+                        + "\"rates\":{\"EUR\":1,\"USDT\":1.0,\"USD\":1.08,\"X-1\":{\"v\":2},\"JPY\":161.5},\"time_last_updated\":1700000000}");
+
+        RateTable rates = service.getRates("eur");
+
+        assertEquals(CurrencyCodes.indexOf("EUR"), rates.getBaseIndex());
+        assertEquals(1.08, rates.rate(CurrencyCodes.indexOf("USD")), 1e-9);
+        assertEquals(161.5, rates.rate(CurrencyCodes.indexOf("jpy")), 1e-9);
+        assertTrue(Double.isNaN(rates.rate(CurrencyCodes.indexOf("CHF"))));
+        assertEquals(Arrays.asList("EUR"), service.requestedBases);
+    }
+
+    @Test
+    public void testConvertUsesParsedRates() {
+        PayloadCurrencyService service = new PayloadCurrencyService("{\"rates\":{\"USD\":1.25}}");
+
+        assertEquals(125.0, service.convert("gbp", "usd", 100.0), 1e-9);
+        assertEquals(Arrays.asList("GBP"), service.requestedBases);
+    }
+
+    @Test
+    public void testUnknownTargetCurrency() {
+        PayloadCurrencyService service = new PayloadCurrencyService("{\"rates\":{\"USD\":1.25}}");
+        try {
+            service.convert("GBP", "XYZ", 1.0);
+            fail("Expected unknown target currency to fail");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("Target currency not found: XYZ"));
+        }
+    }
+
+    @Test
+    public void testCurrencyCodesAreNormalizedOnce() {
+        int index = CurrencyCodes.indexOf("Sek");
+
+        assertEquals(index, CurrencyCodes.indexOf("SEK"));
+        assertEquals(index, CurrencyCodes.indexOf("sek"));
+        assertEquals("SEK", CurrencyCodes.codeOf(index));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCurrencyCode() {
+        CurrencyCodes.indexOf("EURO");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullCurrencyCode() {
+        CurrencyCodes.indexOf(null);
+    }
+
+    /**
+     * CurrencyService serving a canned rates payload instead of calling the API.
+     */
+    private static class PayloadCurrencyService extends CurrencyService {
+        private final String payload;
+        private final List<String> requestedBases = new CopyOnWriteArrayList<>();
+
+        PayloadCurrencyService(String payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        protected byte[] fetchRatesPayload(String baseCurrency) {
+            requestedBases.add(baseCurrency);
+            return payload.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testPrefetchDownloadsEachBaseOnce() {
+        PayloadCurrencyService service = new PayloadCurrencyService("{\"rates\":{\"USD\":1.25}}");
+
+        service.prefetchRates(Arrays.asList("EUR", "GBP", "eur", "JPY"));
+        service.convert("GBP", "USD", 10.0);
+        service.convertToUSD("EUR", 10.0);
+
+        assertEquals(3, service.requestedBases.size());
+        assertEquals(Set.of("EUR", "GBP", "JPY"), new HashSet<>(service.requestedBases));
+    }
+
+    @Test
+    public void testMoneyConversionRoundsOnceToMinorUnits() {
+        assertEquals(Money.ofMinor("USD", 2199), currencyService.convert(Money.of("EUR", new BigDecimal("19.99")), "USD"));
+        assertEquals(Money.ofMinor("USD", 670), currencyService.convert(Money.of("JPY", 1000), "USD"));
+        assertEquals(Money.ofMinor("JPY", 14925), currencyService.convert(Money.of("USD", 100), "JPY"));
+
+        long[] converted = currencyService.convert("EUR", "USD", new long[]{100, 250, 1999});
+        assertArrayEquals(new long[]{110, 275, 2199}, converted);
+        assertEquals(4, currencyService.lookups.size());
+    }
+
+    @Test
+    public void testMoneyDivisionByIntegerIsExact() {
+        // Beyond 2^53 a double cannot hold every long
+        assertEquals(Money.ofMinor("USD", 9_007_199_254_740_993L), Money.ofMinor("USD", 9_007_199_254_740_993L).div(1));
+        assertEquals(Money.ofMinor("USD", 3_074_457_345_618_258_602L), Money.ofMinor("USD", Long.MAX_VALUE).div(3));
+
+        // Ties to even, whatever the signs
+        assertEquals(Money.ofMinor("USD", 2), Money.ofMinor("USD", 5).div(2));
+        assertEquals(Money.ofMinor("USD", 4), Money.ofMinor("USD", 7).div(2));
+        assertEquals(Money.ofMinor("USD", -2), Money.ofMinor("USD", -5).div(2));
+        assertEquals(Money.ofMinor("USD", -4), Money.ofMinor("USD", 7).div(-2));
+        assertEquals(Money.ofMinor("USD", -3), Money.ofMinor("USD", -8).div(3));
+        assertEquals(Money.ofMinor("USD", -1), Money.ofMinor("USD", Long.MAX_VALUE).div(Long.MIN_VALUE));
+        assertEquals(Money.ofMinor("USD", 0), Money.ofMinor("USD", 1).div(Long.MIN_VALUE));
+        assertEquals(Money.ofMinor("USD", 1), Money.ofMinor("USD", Long.MIN_VALUE).div(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testMoneyOperatorsInFormulas() {
+        FormulaEngine engine = new FormulaEngine(currencyService);
+
+        FormulaResult total = engine.evaluate("money('EUR', 10.10) * 3 - money('EUR', 0.3)");
+        assertEquals(Money.of("EUR", 30), total.getValue());
+        assertEquals("30.00 EUR", total.getValue().toString());
+
+        FormulaResult split = engine.evaluate("[money('EUR', 10) / 3, -money('eur', 1.005), money('EUR', 1) < money('EUR', 2)]");
+        assertEquals(Arrays.asList(Money.ofMinor("EUR", 333), Money.ofMinor("EUR", -100), true), split.getValue());
+
+        FormulaResult equality = engine.evaluate("[money('EUR', 1) == money('USD', 1), money('EUR', 1) != money('USD', 1), money('EUR', 1) == money('EUR', 1.00)]");
+        assertEquals(Arrays.asList(false, true, true), equality.getValue());
+        assertFalse(engine.evaluate("money('EUR', 1) < money('USD', 2)").isSuccess());
+
+        FormulaResult converted = engine.evaluate("currencyService.convert(money('EUR', 19.99), 'USD').amount");
+        assertEquals(new BigDecimal("21.99"), converted.getValue());
+    }
+
+    /**
+     * CurrencyService with fixed rates to USD, recording every rate lookup.
+     */
+    private static class StubCurrencyService extends CurrencyService {
+        private final Map<String, Double> ratesToUsd;
+        private final List<String> lookups = new ArrayList<>();
+
+        StubCurrencyService(Map<String, Double> ratesToUsd) {
+            this.ratesToUsd = ratesToUsd;
+        }
+
+        @Override
+        public double getExchangeRate(String sourceCurrency, String targetCurrency) {
+            lookups.add(sourceCurrency);
+            return ratesToUsd.get(sourceCurrency) / ratesToUsd.get(targetCurrency);
+        }
+    }
+}
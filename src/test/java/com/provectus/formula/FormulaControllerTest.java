@@ -0,0 +1,69 @@
+// ============================================
+// FormulaControllerTest.java
+// ============================================
+package com.provectus.formula;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(FormulaEngineApplication.SERVER_PROFILE)
+public class FormulaControllerTest {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Test
+    public void testEvaluate() {
+        Map<?, ?> response = rest.postForObject("/formulas/evaluate",
+            Map.of("formula", "discount(price, rate)", "variables", Map.of("price", 1000.0, "rate", 20.0)), Map.class);
+        assertEquals(true, response.get("success"));
+        assertEquals(800.0, response.get("value"));
+
+        Map<?, ?> failed = rest.postForObject("/formulas/evaluate", Map.of("formula", "1 +"), Map.class);
+        assertEquals(false, failed.get("success"));
+        assertNotNull(failed.get("error"));
+    }
+
+    @Test
+    public void testBatchEvaluate() {
+        List<?> responses = rest.postForObject("/formulas/evaluate/batch",
+            Map.of("formula", "price * qty", "contexts", List.of(Map.of("price", 2, "qty", 3), Map.of("price", 5, "qty", 5))), List.class);
+        assertEquals(List.of(6, 25), responses.stream().map(r -> ((Map<?, ?>) r).get("value")).toList());
+    }
+
+    @Test
+    public void testCompileAndEvaluateById() {
+        ResponseEntity<Map> created = rest.postForEntity("/formulas", Map.of("formula", "countLetters(words) * factor"), Map.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        String id = (String) created.getBody().get("id");
+        assertEquals(id, rest.postForObject("/formulas", Map.of("formula", "countLetters(words) * factor"), Map.class).get("id"));
+
+        Map<?, ?> response = rest.postForObject("/formulas/" + id + "/evaluate",
+            Map.of("words", List.of("hello", "world"), "factor", 2), Map.class);
+        assertEquals(20, response.get("value"));
+
+        rest.put("/formulas/pricing", Map.of("formula", "price * 2"));
+        rest.put("/formulas/pricing", Map.of("formula", "price * 3"));
+        Map<?, ?> pricing = rest.getForObject("/formulas/pricing", Map.class);
+        assertEquals(2, pricing.get("version"));
+        assertEquals(30, rest.postForObject("/formulas/pricing/evaluate", Map.of("price", 10), Map.class).get("value"));
+
+        rest.delete("/formulas/" + id);
+        assertEquals(HttpStatus.NOT_FOUND, rest.getForEntity("/formulas/" + id, Map.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, rest.postForEntity("/formulas", Map.of("formula", "1 +"), Map.class).getStatusCode());
+    }
+}
@@ -0,0 +1,101 @@
+// ============================================
+// FormulaDaemonTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.service.CurrencyService;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FormulaDaemonTest {
+
+    private Path directory;
+    private FormulaDaemon daemon;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("formula-daemon");
+        CurrencyService currencyService = new CurrencyService() {
+            @Override
+            public double getExchangeRate(String sourceCurrency, String targetCurrency) {
+                return 1.25;
+            }
+        };
+        daemon = new FormulaDaemon(new FormulaEngine(currencyService), currencyService, directory.resolve("engine.sock"));
+        daemon.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        daemon.close();
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testPipelinedRequestsAnsweredInOrder() throws IOException {
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            requests.add(Map.of("id", i, "op", "eval", "formula", "price * qty", "vars", Map.of("price", i, "qty", 2)));
+        }
+        requests.add(Map.of("id", 500, "op", "convert", "from", "EUR", "to", "USD", "amount", 100));
+        requests.add(Map.of("id", 501, "formula", "1 +"));
+        requests.add(Map.of("id", 502, "op", "shutdown"));
+
+        List<Map<String, Object>> responses;
+        try (DaemonClient client = DaemonClient.connect(daemon.getSocket())) {
+            responses = client.send(requests);
+        }
+
+        assertEquals(503, responses.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, responses.get(i).get("id"));
+            assertEquals(String.valueOf(i * 2), responses.get(i).get("result"));
+        }
+        assertEquals(125.0, responses.get(500).get("result"));
+        assertNotNull(responses.get(501).get("error"));
+        assertEquals("Unknown op: shutdown", responses.get(502).get("error"));
+    }
+
+    @Test
+    public void testSecondDaemonRefusesLiveSocketButReplacesStaleOne() throws IOException {
+        FormulaDaemon second = new FormulaDaemon(new FormulaEngine(new CurrencyService()), new CurrencyService(), daemon.getSocket());
+        assertThrows(IOException.class, second::start);
+
+        daemon.close();
+        Files.createFile(daemon.getSocket());
+        second.start();
+        try (DaemonClient client = DaemonClient.connect(second.getSocket())) {
+            assertEquals("pong", client.send(List.of(Map.of("id", 1, "op", "ping"))).get(0).get("result"));
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    public void testSocketAndNewDirectoryAreOwnerOnly() throws IOException {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path runtime = directory.resolve("runtime");
+        FormulaDaemon nested = new FormulaDaemon(new FormulaEngine(new CurrencyService()), new CurrencyService(), runtime.resolve("engine.sock"));
+        nested.start();
+        try {
+            assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(runtime));
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(nested.getSocket()));
+        } finally {
+            nested.close();
+            Files.deleteIfExists(runtime);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+// ============================================
+// FormulaEngineApplicationTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.service.UserQueryService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+
+import static org.junit.Assert.*;
+
+public class FormulaEngineApplicationTest {
+
+    @Test
+    public void testOnlyUserFormulasNeedPersistence() {
+        assertFalse(FormulaEngineApplication.needsPersistence(new String[0]));
+        assertFalse(FormulaEngineApplication.needsPersistence(new String[]{"--eval", "2 + 2"}));
+        assertFalse(FormulaEngineApplication.needsPersistence(new String[]{"-c", "EUR", "USD", "10"}));
+        assertFalse(FormulaEngineApplication.needsPersistence(new String[]{"sqrt(16)", "+", "1"}));
+        assertTrue(FormulaEngineApplication.needsPersistence(new String[]{"-e", "userRepository.count()"}));
+        assertTrue(FormulaEngineApplication.needsPersistence(new String[]{"--batch", "userQueries.aggregate().count() * x", "in.csv"}));
+        assertTrue(FormulaEngineApplication.needsPersistence(new String[]{"userSnapshot.size()"}));
+        assertTrue(FormulaEngineApplication.needsPersistence(new String[]{"--daemon"}));
+    }
+
+    @Test
+    public void testLiteProfileSkipsJpa() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FormulaEngineApplication.class)
+                .profiles(FormulaEngineApplication.LITE_PROFILE)
+                .run("--eval", "2 + 3")) {
+            assertEquals(0, context.getBeanNamesForType(DataSource.class).length);
+            assertEquals(0, context.getBeanNamesForType(EntityManagerFactory.class).length);
+            assertEquals(0, context.getBeanNamesForType(UserQueryService.class).length);
+            assertEquals(5, context.getBean(FormulaEngine.class).evaluate("2 + 3").getValue());
+        }
+    }
+}
@@ -3,12 +3,26 @@
 // ============================================
 package com.provectus.formula;
 
+import com.provectus.formula.service.CurrencyService;
 import groovy.lang.Script;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
@@ -57,6 +71,80 @@ public class FormulaEngineTest {
         assertEquals(5.333333333333333, (Double) avgLength.getValue(), 0.01);
     }
     
+    @Test
+    public void testTextStats() {
+        FormulaContext context = new FormulaContext()
+            .setVariable("sentences", new String[]{"  Hello\tWorld ", null, "Groovy  DSL\n", "", "Formula Engine"});
+
+        FormulaResult result = engine.evaluate("def s = textStats(sentences); [s.letters, s.vowels, s.consonants, s.words, s.chars]", context);
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList(32, 11, 21, 6, 40), result.getValue());
+
+        FormulaResult avgLength = engine.evaluate("textStats(sentences).averageWordLength", context);
+        assertEquals(5.333333333333333, (Double) avgLength.getValue(), 0.0001);
+    }
+
+    @Test
+    public void testCountWordsMatchesRegexSplit() {
+        String[] samples = {"", " ", "one", "  two words ", "tab\tand\nnewline", "a\u000Bb\fc\rd", "x \u00A0y", "trailing  ",
+            "\u0001hello world\u0002", "\u0000", "\u001F x \u0003", "a\u0001b"};
+        for (String sample : samples) {
+            int expected = sample.trim().isEmpty() ? 0 : sample.trim().split("\\s+").length;
+            FormulaResult result = engine.evaluate("countWords(text)",
+                new FormulaContext().setVariable("text", new String[]{sample}));
+            assertEquals("Words in '" + sample + "'", expected, result.getValue());
+            assertEquals("Stats words in '" + sample + "'", expected,
+                engine.evaluate("textStats(text).words", new FormulaContext().setVariable("text", new String[]{sample})).getValue());
+        }
+    }
+
+    @Test
+    public void testStringFunctionsOverStreamsAndParallelLists() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 25_000; i++) {
+            lines.add(i % 2 == 0 ? "Hello World" : "Groovy DSL");
+        }
+        FormulaContext context = new FormulaContext().setVariable("lines", lines);
+
+        FormulaResult sequential = engine.evaluate("[countLetters(lines), countWords(lines), countVowels(lines)]", context);
+        FormulaResult streamed = engine.evaluate(
+            "[countLetters(lines.stream()), countWords(lines.parallelStream()), countVowels(lines.stream())]", context);
+        FormulaResult parallel = engine.evaluate(
+            "[parallelCountLetters(lines), parallelCountWords(lines), parallelCountVowels(lines)]", context);
+
+        assertEquals(Arrays.asList(237_500, 50_000, 62_500), sequential.getValue());
+        assertEquals(sequential.getValue(), streamed.getValue());
+        assertEquals(sequential.getValue(), parallel.getValue());
+        assertEquals(5, engine.evaluate("countLetters([new StringBuilder('ab1c'), 'de'] as Set)").getValue());
+    }
+
+    @Test
+    public void testStringsParallelThresholdIsPerEngine() {
+        AtomicInteger indexedReads = new AtomicInteger();
+        List<String> words = new ArrayList<>(List.of("ab", "cd", "ef", "gh", "ij", "kl")) {
+            @Override
+            public String get(int index) {
+                indexedReads.incrementAndGet();
+                return super.get(index);
+            }
+        };
+        FormulaContext context = new FormulaContext().setVariable("words", words);
+
+        FormulaEngine splitting = new FormulaEngine(new CurrencyService());
+        ReflectionTestUtils.setField(splitting, "stringsParallelThreshold", 2);
+        try {
+            // Only the chunked scan reads by index
+            assertEquals(12, splitting.evaluate("parallelCountLetters(words)", context).getValue());
+            assertTrue(indexedReads.get() > 0);
+
+            indexedReads.set(0);
+            assertEquals(12, engine.evaluate("parallelCountLetters(words)", context).getValue());
+            assertEquals(0, indexedReads.get());
+        } finally {
+            splitting.shutdown();
+        }
+    }
+
     @Test
     public void testComplexStringFormula() {
         FormulaContext context = new FormulaContext()
@@ -114,6 +202,119 @@ public class FormulaEngineTest {
         assertEquals(800.0, result.getValue());
     }
     
+    @Test
+    public void testMathArrayFunctionsMatchScalar() {
+        double[] prices = new double[37];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = 0.1 + i * 13.37;
+        }
+        FormulaContext context = new FormulaContext().setVariable("prices", prices);
+
+        FormulaResult result = engine.evaluate("""
+            def arrays = [square(prices), cube(prices), percentage(prices, 7.5), discount(prices, 15), compound(prices, 5, 10)]
+            def scalars = prices.collect { [square(it), cube(it), percentage(it, 7.5), discount(it, 15), compound(it, 5, 10)] }.transpose()
+            arrays.collect { it as List } == scalars
+        """, context);
+        assertTrue(result.isSuccess());
+        assertEquals(true, result.getValue());
+    }
+
+    @Test
+    public void testDoubleNumericMode() {
+        FormulaContext context = new FormulaContext().setVariable("price", 90);
+
+        FormulaResult decimal = engine.evaluate("price * 1.2 / 3", context);
+        FormulaResult dbl = engine.evaluate("price * 1.2 / 3", context, NumericMode.DOUBLE);
+        assertEquals(new BigDecimal("36.0"), decimal.getValue());
+        assertEquals(36.0, (Double) dbl.getValue(), 1e-9);
+
+        FormulaResult divisions = engine.evaluate(
+            "def x = 7; x /= 2; [x, [1, 2].collect { it / 4 }, 10.5.class.simpleName]", context, NumericMode.DOUBLE);
+        assertEquals(Arrays.asList(3.5, Arrays.asList(0.25, 0.5), "Double"), divisions.getValue());
+        assertEquals(Double.POSITIVE_INFINITY, engine.evaluate("1 / 0", context, NumericMode.DOUBLE).getValue());
+    }
+
+    @Test
+    public void testPurityAnalysis() {
+        String[] pure = {
+            "sqrt(price) + discount(price, 10) * qty",
+            "def net(p) { p * 0.8 }; net(price).setScale(2, RoundingMode.HALF_UP)",
+            "[price, qty].collect { it * 2 }.sum() + Math.PI",
+            "capitalize(name) + ': ' + money('EUR', price)"
+        };
+        String[] impure = {
+            "price * Math.random()",
+            "random() * price",
+            "System.currentTimeMillis() - price",
+            "new Date().time",
+            "println price",
+            "convertCurrency('EUR', 'USD', price)",
+            "currencyService.getExchangeRate('EUR', 'USD')",
+            "class Counter { static int n }; Counter.n++",
+            "(name as File).text",
+            "name.toURL().text",
+            "this.currencyService.convert('EUR', 'USD', price)",
+            "binding.getVariable('userRepository').count()",
+            "File f = [name]; f.text",
+            "[name].collect { delegate.currencyService }"
+        };
+        for (String formula : pure) {
+            assertTrue(formula, engine.compileFormula(formula).getAnalysis().isPure());
+        }
+        for (String formula : impure) {
+            assertFalse(formula, engine.compileFormula(formula).getAnalysis().isPure());
+        }
+    }
+
+    @Test
+    public void testMemoizesPureFormulasOverImmutableInputs() {
+        CompiledFormula compiled = engine.compileFormula("price * qty + 1");
+        FormulaContext context = new FormulaContext().setVariable("price", 12.5).setVariable("qty", 4);
+
+        FormulaResult first = engine.evaluate(compiled, context);
+        assertEquals(51.0, first.getValue());
+        assertSame(first, engine.evaluate(compiled, new FormulaContext().setVariable("price", 12.5).setVariable("qty", 4)));
+        assertEquals(3.5, engine.evaluate(compiled, context.setVariable("qty", 0.2)).getValue());
+
+        // A mutable input could change between calls, so it is never a cache key
+        FormulaContext listContext = new FormulaContext().setVariable("values", new ArrayList<>(List.of(1, 2)));
+        CompiledFormula sum = engine.compileFormula("values.sum()");
+        assertNotSame(engine.evaluate(sum, listContext), engine.evaluate(sum, listContext));
+
+        CompiledFormula impure = engine.compileFormula("price * Math.random()");
+        assertNotSame(engine.evaluate(impure, context), engine.evaluate(impure, context));
+    }
+
+    @Test
+    public void testFormulaAnalysisFindsLiteralCurrencies() {
+        CompiledFormula compiled = engine.compileCached("""
+            def a = convertCurrency('EUR', 'USD', 100) + convertToUSD('GBP', 50)
+            def b = currencyService.getExchangeRate('JPY', 'EUR')
+            def c = convertCurrency(['CHF', 'EUR'], 'USD', [1, 2])
+            def d = convertCurrency(from, 'USD', 1)
+            a + b + c.sum() + d
+        """);
+
+        assertEquals(Arrays.asList("EUR", "GBP", "JPY", "CHF"), new ArrayList<>(compiled.getAnalysis().getCurrencyBases()));
+    }
+
+    @Test
+    public void testEvaluatePrefetchesRatesBeforeRunning() {
+        PrefetchRecordingCurrencyService service = new PrefetchRecordingCurrencyService("{\"rates\":{\"USD\":1.25}}");
+        FormulaEngine prefetching = new FormulaEngine(service);
+        try {
+            FormulaResult result = prefetching.evaluate(
+                    "currencyService.convert('EUR', 'USD', 100) + currencyService.convertToUSD('GBP', 50)");
+
+            assertTrue(result.isSuccess());
+            assertEquals(187.5, ((Number) result.getValue()).doubleValue(), 1e-9);
+            assertEquals(Arrays.asList(Arrays.asList("EUR", "GBP")), service.prefetched);
+            assertEquals(2, service.requestedBases.size());
+        } finally {
+            prefetching.shutdown();
+        }
+    }
+
     @Test
     public void testDSLStyle() {
         FormulaContext context = new FormulaContext()
@@ -353,6 +554,137 @@ public class FormulaEngineTest {
         assertEquals("HELLO, WORLD, GROOVY", result.getValue());
     }
 
+    @Test
+    public void testSpecializesFormulasWithStableTypes() throws Exception {
+        FormulaEngine profiling = new FormulaEngine(new CurrencyService());
+        ReflectionTestUtils.setField(profiling, "specializeAfter", 3);
+        try {
+            CompiledFormula stable = profiling.compileFormula("price * qty + discount(price, 10)");
+            CompiledFormula polymorphic = profiling.compileFormula("price * qty");
+            for (int i = 1; i <= 3; i++) {
+                profiling.evaluate(stable, new FormulaContext().setVariable("price", i * 10.0).setVariable("qty", i));
+                profiling.evaluate(polymorphic, new FormulaContext().setVariable("price", i % 2 == 0 ? (Object) i : (Object) (i * 1.5)).setVariable("qty", i));
+            }
+            for (int i = 0; i < 100 && !stable.isSpecialized(); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(stable.isSpecialized());
+            assertFalse(polymorphic.isSpecialized());
+
+            assertEquals(78.0, profiling.evaluate(stable, new FormulaContext().setVariable("price", 20.0).setVariable("qty", 3)).getValue());
+            // Other types fail the guard and run the dynamic version
+            FormulaContext decimals = new FormulaContext().setVariable("price", new BigDecimal("5")).setVariable("qty", 5L);
+            assertEquals(engine.evaluate(stable.getSource(), decimals).getValue(), profiling.evaluate(stable, decimals).getValue());
+        } finally {
+            profiling.shutdown();
+        }
+    }
+
+    @Test
+    public void testEvaluateAllSharesContextOnlyCalls() {
+        AtomicInteger scans = new AtomicInteger();
+        List<String> names = new ArrayList<>(List.of("Ann Lee", "Bob", "Christina")) {
+            @Override
+            public Iterator<String> iterator() {
+                scans.incrementAndGet();
+                return super.iterator();
+            }
+        };
+        FormulaContext context = new FormulaContext().setVariable("names", names).setVariable("factor", 2)
+            .setVariable("big", Long.MAX_VALUE);
+
+        List<FormulaResult> results = engine.evaluateAll(List.of(
+            "countLetters(names)",
+            "countLetters(names) * factor",
+            "round(countLetters(names) / countWords(names))",
+            "def names = ['x']; countLetters(names)",
+            "countLetters(",
+            "toIntExact(big)"), context);
+
+        assertEquals(6, results.size());
+        assertEquals(18, results.get(0).getValue());
+        assertEquals(36, results.get(1).getValue());
+        assertEquals(5L, results.get(2).getValue());
+        assertEquals(1, results.get(3).getValue());
+        assertFalse(results.get(4).isSuccess());
+        assertEquals("integer overflow", results.get(5).getErrorMessage());
+        // countLetters(names) once for all formulas, countWords(names) once
+        assertEquals(2, scans.get());
+        assertEquals(18, engine.evaluate("countLetters(names)", context).getValue());
+        assertEquals(3, scans.get());
+    }
+
+    @Test
+    public void testLazyVariablesResolveOncePerEvaluation() {
+        AtomicInteger rateLookups = new AtomicInteger();
+        AtomicInteger unusedLookups = new AtomicInteger();
+        FormulaContext context = new FormulaContext()
+            .setVariable("price", 200.0)
+            .setLazyVariable("discountRate", () -> {
+                rateLookups.incrementAndGet();
+                return 10.0;
+            })
+            .setLazyVariable("history", () -> {
+                unusedLookups.incrementAndGet();
+                return List.of(1, 2, 3);
+            });
+        FormulaEngine.LazyVariableStats before = engine.getLazyVariableStats();
+
+        assertEquals(160.0, engine.evaluate("discount(price, discountRate) - discountRate * 2", context).getValue());
+        assertEquals(1, rateLookups.get());
+        assertEquals(2000.0, engine.evaluate("(1..50).toList().parallelStream().mapToDouble { discountRate * 4 }.sum()", context).getValue());
+        assertEquals(2, rateLookups.get());
+        assertEquals(5, engine.evaluate("discountRate = 5; discountRate", context).getValue());
+        assertEquals(2, rateLookups.get());
+        assertEquals(0, unusedLookups.get());
+
+        FormulaEngine.LazyVariableStats after = engine.getLazyVariableStats();
+        assertEquals(6, after.offered() - before.offered());
+        assertEquals(2, after.materialized() - before.materialized());
+    }
+
+    @Test
+    public void testLazyVariablesOverrideEngineBindings() {
+        AtomicInteger lookups = new AtomicInteger();
+        FormulaContext context = new FormulaContext()
+            .setLazyVariable("magicval", () -> {
+                lookups.incrementAndGet();
+                return 7;
+            })
+            .setLazyVariable("currencyService", () -> "stub");
+
+        assertEquals(7, engine.evaluate("magicval", context).getValue());
+        assertEquals(1, lookups.get());
+        assertEquals("stub", engine.evaluate("currencyService", context).getValue());
+        assertEquals(42, engine.evaluate("magicval").getValue());
+    }
+
+    @Test
+    public void testParallelStreamsRunInEnginePool() {
+        String formula = "(1..64).toList().parallelStream().map { Thread.currentThread().name }.collect(Collectors.toSet())";
+        assertTrue(engine.compileFormula(formula).getAnalysis().isParallel());
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.getErrorMessage(), result.isSuccess());
+        for (Object thread : (Set<?>) result.getValue()) {
+            assertTrue(thread.toString(), thread.toString().startsWith("formula-parallel-"));
+        }
+        assertTrue(engine.getParallelPoolStats().poolSize() > 0);
+        assertFalse(engine.evaluate("[1, 0].parallelStream().map { 1.intdiv(it) }.toList()").isSuccess());
+
+        FormulaEngine tenantEngine = new FormulaEngine(new CurrencyService());
+        ReflectionTestUtils.setField(tenantEngine, "tenantThreads", 2);
+        try {
+            FormulaResult tenantResult = tenantEngine.evaluate(formula, new FormulaContext().setTenant("acme"));
+            for (Object thread : (Set<?>) tenantResult.getValue()) {
+                assertTrue(thread.toString(), thread.toString().startsWith("formula-parallel-acme-"));
+            }
+            assertEquals(2, tenantEngine.getTenantPoolStats().get("acme").parallelism());
+        } finally {
+            tenantEngine.shutdown();
+        }
+    }
+
     @Test
     public void testStreamApiWithContext() {
         FormulaContext context = new FormulaContext()
@@ -370,4 +702,29 @@ public class FormulaEngineTest {
         assertTrue(result.isSuccess());
         assertEquals(20.0, (Double) result.getValue(), 0.01);
     }
+
+    /**
+     * CurrencyService serving a canned rates payload, recording what it downloads and prefetches.
+     */
+    private static class PrefetchRecordingCurrencyService extends CurrencyService {
+        private final String payload;
+        private final List<String> requestedBases = new CopyOnWriteArrayList<>();
+        private final List<List<String>> prefetched = new CopyOnWriteArrayList<>();
+
+        PrefetchRecordingCurrencyService(String payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        protected byte[] fetchRatesPayload(String baseCurrency) {
+            requestedBases.add(baseCurrency);
+            return payload.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void prefetchRates(Collection<String> baseCurrencies) {
+            prefetched.add(new ArrayList<>(baseCurrencies));
+            super.prefetchRates(baseCurrencies);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+// ============================================
+// FormulaRegistryTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.service.CurrencyService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class FormulaRegistryTest {
+
+    private final FormulaRegistry registry = new FormulaRegistry(new FormulaEngine(new CurrencyService()));
+
+    @After
+    public void tearDown() throws IOException {
+        registry.close();
+    }
+
+    @Test
+    public void testRegisterSwapsVersions() {
+        FormulaContext context = new FormulaContext().setVariable("x", 4);
+
+        assertEquals(1, registry.register("double", "x * 2").getVersion());
+        assertEquals(1, registry.register("double", "x * 2").getVersion());
+        assertEquals(8, registry.evaluate("double", context).getValue());
+
+        assertEquals(2, registry.register("double", "x + x").getVersion());
+        assertThrows(IllegalArgumentException.class, () -> registry.register("double", "x +"));
+        assertEquals("x + x", registry.get("double").get().getSource());
+        assertEquals(8, registry.evaluate("double", context).getValue());
+
+        assertTrue(registry.remove("double"));
+        assertFalse(registry.evaluate("double", context).isSuccess());
+    }
+
+    @Test
+    public void testWatchedDirectoryReloadsInBackground() throws Exception {
+        Path dir = Files.createTempDirectory("formula-registry");
+        Files.writeString(dir.resolve("total.groovy"), "price * qty");
+        FormulaContext context = new FormulaContext().setVariable("price", 5).setVariable("qty", 3);
+
+        registry.watch(dir);
+        assertEquals(15, registry.evaluate("total", context).getValue());
+
+        Files.writeString(dir.resolve("total.groovy"), "price * qty + 1");
+        awaitTrue(() -> registry.get("total").get().getVersion() == 2);
+        assertEquals(16, registry.evaluate("total", context).getValue());
+
+        Files.writeString(dir.resolve("total.groovy"), "price *");
+        awaitTrue(() -> registry.getReloadError("total").isPresent());
+        assertEquals(16, registry.evaluate("total", context).getValue());
+
+        Files.writeString(dir.resolve("tax.groovy"), "price * 0.2");
+        awaitTrue(() -> registry.get("tax").isPresent());
+        Files.delete(dir.resolve("total.groovy"));
+        awaitTrue(() -> registry.get("total").isEmpty());
+
+        Files.delete(dir.resolve("tax.groovy"));
+        Files.delete(dir);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -5,11 +5,22 @@ package com.provectus.formula;
 
 import com.provectus.formula.model.User;
 import com.provectus.formula.repository.UserRepository;
+import com.provectus.formula.service.MaterializedAggregate;
+import com.provectus.formula.service.MaterializedAggregates;
+import com.provectus.formula.service.UserBulkLoader;
+import com.provectus.formula.service.UserQueryService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.ResourceUtils;
 
@@ -30,6 +41,21 @@ public class UserFormulaIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserQueryService userQueries;
+
+    @Autowired
+    private UserBulkLoader userLoader;
+
+    @Autowired
+    private MaterializedAggregates materializedAggregates;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Before
     public void setUp() {
         // Clear database before each test
@@ -195,4 +221,217 @@ public class UserFormulaIntegrationTest {
         // Total letters in names (without spaces): Alice(5) + Bob(3) + Charlie(7) + Diana(5) + Eve(3) = 23
         assertEquals(23, totalLetters.intValue());
     }
+
+    @Test
+    public void testLoadAndExecuteStreamingFormulaFile() throws Exception {
+        File formulaFile = ResourceUtils.getFile("classpath:formulas/users_older_than_20_letter_count_streaming.groovy");
+        String formula = Files.readString(formulaFile.toPath());
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.isSuccess());
+
+        // Same answer as the entity-based formula: 5 + 3 + 7 + 5 + 3 = 23
+        assertEquals(23, result.getValue());
+    }
+
+    @Test
+    public void testStreamUsersBornBefore() {
+        String formula = """
+            userQueries.withUsersBornBefore(java.time.LocalDate.of(1989, 1, 1)) { users ->
+                users.map { it.name }.sorted().collect(Collectors.toList())
+            }
+        """;
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.isSuccess());
+        assertEquals(java.util.Arrays.asList("Bob", "Diana", "Eve"), result.getValue());
+    }
+
+    @Test
+    public void testStreamedUsersAreDetached() {
+        long managed = userQueries.withUsersBornBefore(LocalDate.of(2000, 1, 1),
+                users -> users.filter(entityManager::contains).count());
+
+        assertEquals(0, managed);
+    }
+
+    @Test
+    public void testLoadAndExecutePushdownFormulaFile() throws Exception {
+        File formulaFile = ResourceUtils.getFile("classpath:formulas/users_older_than_20_letter_count_pushdown.groovy");
+        String formula = Files.readString(formulaFile.toPath());
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.isSuccess());
+        assertEquals(23L, result.getValue());
+    }
+
+    @Test
+    public void testAggregationPushdown() {
+        userRepository.save(new User("Mary Ann\tLee", LocalDate.of(1980, 1, 1)));
+
+        FormulaResult letters = engine.evaluate("userQueries.aggregate().nameLike('Mary%').sumNameLetters()");
+        FormulaResult length = engine.evaluate("userQueries.aggregate().nameLike('Mary%').sumNameLength()");
+        FormulaResult count = engine.evaluate("""
+            userQueries.aggregate()
+                .bornAfter(java.time.LocalDate.of(1984, 1, 1))
+                .bornBefore(java.time.LocalDate.of(1991, 1, 1))
+                .count()
+        """);
+        FormulaResult average = engine.evaluate("userQueries.aggregate().bornBefore(java.time.LocalDate.of(1986, 1, 1)).avgNameLength()");
+        FormulaResult oldest = engine.evaluate("userQueries.aggregate().nameLike('%li%').minBirthday()");
+        FormulaResult none = engine.evaluate("userQueries.aggregate().nameLike('Nobody').sumNameLength()");
+
+        assertEquals(10L, letters.getValue());
+        assertEquals(12L, length.getValue());
+        // Alice, Bob, Eve
+        assertEquals(3L, count.getValue());
+        // Mary Ann\tLee (12), Bob (3), Diana (5)
+        assertEquals(6.667, (Double) average.getValue(), 0.001);
+        // Alice, Charlie
+        assertEquals(LocalDate.of(1990, 5, 15), oldest.getValue());
+        assertEquals(0L, none.getValue());
+    }
+
+    @Test
+    public void testIterateUsersInKeysetPages() {
+        userRepository.save(new User("Bob Twin", LocalDate.of(1985, 8, 22)));
+
+        String formula = """
+            userQueries.iterateUsersBornBefore(java.time.LocalDate.of(1995, 1, 1), 2)
+                .collect { it.name }
+        """;
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.isSuccess());
+        assertEquals(java.util.Arrays.asList("Diana", "Bob", "Bob Twin", "Eve", "Alice"), result.getValue());
+    }
+
+    @Test
+    public void testKeysetWindow() {
+        Window<User> first = userRepository.findByBirthdayBeforeOrderByBirthdayAscIdAsc(
+                LocalDate.of(2000, 1, 1), ScrollPosition.keyset(), Limit.of(3));
+        Window<User> second = userRepository.findByBirthdayBeforeOrderByBirthdayAscIdAsc(
+                LocalDate.of(2000, 1, 1), first.positionAt(first.size() - 1), Limit.of(3));
+
+        assertEquals(3, first.size());
+        assertTrue(first.hasNext());
+        assertEquals("Eve", first.getContent().get(2).getName());
+        assertEquals(2, second.size());
+        assertFalse(second.hasNext());
+        assertEquals("Alice", second.getContent().get(0).getName());
+    }
+
+    @Test
+    public void testBulkLoadUsersFromCsv() throws Exception {
+        String csv = """
+            name,birthday
+            Frank,1979-02-11
+            "Smith, Jane",2010-06-01
+            Grace Hopper,1906-12-09
+            """;
+
+        long loaded = userLoader.loadCsv(new java.io.StringReader(csv));
+
+        assertEquals(3, loaded);
+        assertEquals(8, userRepository.count());
+        assertEquals(1, userQueries.aggregate().nameLike("Smith, Jane").count());
+        assertEquals(LocalDate.of(1906, 12, 9), userQueries.aggregate().minBirthday());
+    }
+
+    @Test
+    public void testBulkLoadUnescapesQuotesInNames() throws Exception {
+        String csv = """
+            "Joe ""Jr"", Smith",1990-03-04
+            """;
+
+        assertEquals(1, userLoader.loadCsv(new java.io.StringReader(csv)));
+        assertEquals(1, userQueries.aggregate().nameLike("Joe \"Jr\", Smith").count());
+    }
+
+    @Test
+    public void testUsersBornBeforeIsCachedUntilNextWrite() {
+        LocalDate date = LocalDate.of(1989, 1, 1);
+
+        List<User> first = userRepository.findUsersBornBefore(date);
+        assertNotNull(cacheManager.getCache(UserRepository.USERS_BORN_BEFORE_CACHE).get(date));
+        assertEquals(3, first.size());
+
+        // Misses and hits alike are private copies: changing one never reaches the next caller
+        first.get(0).setName("Changed");
+        List<User> second = userRepository.findUsersBornBefore(date);
+        assertNotSame(second, userRepository.findUsersBornBefore(date));
+        second.get(1).setName("Changed");
+        assertFalse(userRepository.findUsersBornBefore(date).stream().anyMatch(u -> u.getName().equals("Changed")));
+        for (List<User> result : List.of(first, second)) {
+            try {
+                result.clear();
+                fail("Cached result must be unmodifiable");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+
+        User frank = userRepository.save(new User("Frank", LocalDate.of(1970, 1, 1)));
+        assertEquals(4, userRepository.findUsersBornBefore(date).size());
+
+        frank.setBirthday(LocalDate.of(1999, 1, 1));
+        userRepository.save(frank);
+        assertEquals(3, userRepository.findUsersBornBefore(date).size());
+
+        userRepository.deleteAll();
+        assertTrue(userRepository.findUsersBornBefore(date).isEmpty());
+    }
+
+    @Test
+    public void testQueryRacingACommittedWriteIsNotCached() {
+        LocalDate date = LocalDate.of(1989, 1, 1);
+        Cache cache = cacheManager.getCache(UserRepository.USERS_BORN_BEFORE_CACHE);
+
+        // The write commits while the query is running, so its answer may already be stale
+        List<User> stale = cache.get(date, () -> {
+            List<User> users = userRepository.findAll();
+            userRepository.save(new User("Frank", LocalDate.of(1970, 1, 1)));
+            return users;
+        });
+
+        assertEquals(5, stale.size());
+        assertNull(cache.get(date));
+        assertEquals(4, userRepository.findUsersBornBefore(date).size());
+    }
+
+    @Test
+    public void testMaterializedAggregateFollowsWrites() {
+        String register = """
+            materializedAggregates.register('letters_over_20', 20) { user ->
+                user.name.replaceAll("\\s+", "").length()
+            }
+            materializedAggregates.value('letters_over_20')
+        """;
+        try {
+            FormulaResult initial = engine.evaluate(register);
+            assertTrue(initial.isSuccess());
+            assertEquals(23L, initial.getValue());
+
+            User frank = userRepository.save(new User("Frank Li", LocalDate.of(1970, 1, 1)));
+            userRepository.save(new User("Kid", LocalDate.now().minusYears(10)));
+            assertEquals(30L, engine.evaluate("materializedAggregates.value('letters_over_20')").getValue());
+
+            frank.setName("Frank");
+            userRepository.save(frank);
+            assertEquals(28L, materializedAggregates.value("letters_over_20"));
+
+            userRepository.delete(userRepository.findAll().stream()
+                    .filter(u -> u.getName().equals("Alice")).findFirst().get());
+            assertEquals(23L, materializedAggregates.value("letters_over_20"));
+
+            // The kid turns 20 in ten years and is re-bucketed into the total
+            MaterializedAggregate aggregate = materializedAggregates.get("letters_over_20");
+            assertEquals(23L, aggregate.value(LocalDate.now().plusYears(10)));
+            assertEquals(26L, aggregate.value(LocalDate.now().plusYears(10).plusDays(1)));
+            assertEquals(23L, aggregate.value(LocalDate.now()));
+            // Bob, Charlie, Diana, Eve and Frank
+            assertEquals(5L, aggregate.count());
+        } finally {
+            materializedAggregates.unregister("letters_over_20");
+        }
+    }
 }
@@ -0,0 +1,113 @@
+// ============================================
+// UserSnapshotTest.java
+// ============================================
+package com.provectus.formula;
+
+import com.provectus.formula.model.User;
+import com.provectus.formula.repository.UserRepository;
+import com.provectus.formula.service.UserSnapshot;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "formula.users.snapshot.enabled=true")
+public class UserSnapshotTest {
+
+    @Autowired
+    private FormulaEngine engine;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSnapshot userSnapshot;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        userRepository.deleteAll();
+        userSnapshot.refresh();
+
+        userRepository.save(new User("Alice", LocalDate.of(1990, 5, 15)));
+        userRepository.save(new User("Bob", LocalDate.of(1985, 8, 22)));
+        userRepository.save(new User("Charlie", LocalDate.of(1995, 3, 10)));
+        userRepository.save(new User("Diana", LocalDate.of(1982, 12, 5)));
+        userRepository.save(new User("Eve", LocalDate.of(1988, 7, 30)));
+    }
+
+    @Test
+    public void testRangeQueries() {
+        assertEquals(5, userSnapshot.size());
+        assertEquals(Arrays.asList("Diana", "Bob", "Eve", "Alice", "Charlie"), userSnapshot.names());
+        assertEquals(3, userSnapshot.countBornBefore(LocalDate.of(1990, 5, 15)));
+        assertEquals(Arrays.asList("Diana", "Bob", "Eve"), userSnapshot.namesBornBefore(LocalDate.of(1990, 5, 15)));
+        assertEquals(Arrays.asList("Bob", "Eve"),
+                userSnapshot.namesBornBetween(LocalDate.of(1985, 8, 22), LocalDate.of(1990, 1, 1)));
+        assertEquals(0, userSnapshot.countBornBefore(LocalDate.of(1900, 1, 1)));
+    }
+
+    @Test
+    public void testFollowsInsertsUpdatesAndDeletes() {
+        assertEquals(5, userSnapshot.size());
+
+        User frank = userRepository.save(new User("Frank", LocalDate.of(1984, 1, 1)));
+        assertEquals(Arrays.asList("Diana", "Frank", "Bob"), userSnapshot.namesBornBefore(LocalDate.of(1986, 1, 1)));
+
+        frank.setBirthday(LocalDate.of(1999, 1, 1));
+        userRepository.save(frank);
+        assertEquals(Arrays.asList("Diana", "Bob"), userSnapshot.namesBornBefore(LocalDate.of(1986, 1, 1)));
+        assertEquals("Frank", userSnapshot.names().get(5));
+
+        userRepository.delete(frank);
+        assertEquals(5, userSnapshot.size());
+    }
+
+    @Test
+    public void testIgnoresRolledBackWrites() {
+        assertEquals(5, userSnapshot.size());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.save(new User("Ghost", LocalDate.of(1970, 1, 1)));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(5, userSnapshot.size());
+        assertFalse(userSnapshot.names().contains("Ghost"));
+    }
+
+    @Test
+    public void testFormulaScansSnapshotNames() {
+        String formula = """
+            userSnapshot.namesBornBefore(java.time.LocalDate.now().minusYears(20))
+                .sum { it.replaceAll("\\\\s+", "").length() }
+        """;
+
+        FormulaResult result = engine.evaluate(formula);
+        assertTrue(result.isSuccess());
+        assertEquals(23, result.getValue());
+    }
+
+    @Test
+    public void testSnapshotListIsReadOnly() {
+        List<String> names = userSnapshot.names();
+        try {
+            names.set(0, "Mallory");
+            fail("Snapshot views must be read-only");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("Diana", userSnapshot.names().get(0));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// Formula: Same as users_older_than_20_letter_count.groovy, computed by the database
+def twentyYearsAgo = java.time.LocalDate.now().minusYears(20)
+
+// Runs one SUM(LENGTH(REPLACE(name, ...))) query and returns only the total
+userQueries.aggregate()
+    .bornBefore(twentyYearsAgo)
+    .sumNameLetters()
@@ -0,0 +1,9 @@
+// Formula: Same as users_older_than_20_letter_count.groovy, streaming only the names
+def twentyYearsAgo = java.time.LocalDate.now().minusYears(20)
+
+// Names are read in chunks inside a read-only transaction, no User entities are loaded
+userQueries.withNamesBornBefore(twentyYearsAgo) { names ->
+    names
+        .mapToInt { name -> name.replaceAll("\\s+", "").length() }
+        .sum()
+}